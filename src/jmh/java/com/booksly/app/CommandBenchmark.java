@@ -0,0 +1,47 @@
+package com.booksly.app;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The work App does on each line of input before any query runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandBenchmark {
+    private final String timestamp = "2024-01-31T12:00:00";
+
+    @State(Scope.Thread)
+    public static class Input {
+        // An early command in the dispatch chain, one in the middle and the
+        // last
+        @Param({ "login maxr pass_MaxRimlinger", "book read 42 1 30 2024-01-31T12:00:00 2024-01-31T13:00:00",
+                "stats" })
+        public String line;
+    }
+
+    @Benchmark
+    public String splitAndDispatch(Input input) {
+        return App.commandName(input.line.split("\\s+"));
+    }
+
+    @Benchmark
+    public Timestamp parseTimestamp() {
+        return App.parseTimestamp(this.timestamp);
+    }
+}
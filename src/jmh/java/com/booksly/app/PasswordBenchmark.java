@@ -0,0 +1,45 @@
+package com.booksly.app;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The password work done on every signup, login and generated user.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PasswordBenchmark {
+    private final String password = "pass_MaxRimlinger";
+    private final String salt = "5f3a9c21";
+    private final byte[] hash = new byte[32];
+    private final char[] hex = new char[64];
+
+    @Benchmark
+    public String hashPassword() {
+        return User.hashPassword(this.password, this.salt);
+    }
+
+    @Benchmark
+    public char[] bytesToHex() {
+        PasswordHasher.toHex(this.hash, this.hex);
+        return this.hex;
+    }
+
+    @Benchmark
+    public String generateSalt() {
+        return User.generateSalt();
+    }
+}
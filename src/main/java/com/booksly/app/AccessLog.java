@@ -0,0 +1,75 @@
+package com.booksly.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes user accesses in the background, so logging in or signing up doesn't
+ * wait on them. Writes happen one at a time, in the order they were recorded.
+ */
+class AccessLog implements AutoCloseable {
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    // Both writes in one statement, so each access is a single roundtrip
+    private static final String RECORD_ACCESS = "with access as (\r\n" + //
+            "    insert into user_access(access_id, user_id, access_time) values (DEFAULT, ?, ?))\r\n" + //
+            "update users set last_access_date = ? where user_id = ?";
+
+    private final ConnectionPool pool;
+    private final ExecutorService writer;
+
+    AccessLog(ConnectionPool pool) {
+        this.pool = pool;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "access-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues an access to be written.
+     *
+     * @param userId The id of the user who accessed the app
+     * @param time   When they accessed it
+     */
+    void record(int userId, Timestamp time) {
+        this.writer.execute(() -> {
+            try (Connection connection = this.pool.getConnection()) {
+                PreparedStatement ps = connection.prepareStatement(RECORD_ACCESS);
+
+                ps.setInt(1, userId);
+                ps.setTimestamp(2, time);
+                ps.setTimestamp(3, time);
+                ps.setInt(4, userId);
+
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                System.err.println("Couldn't record access for user " + userId);
+                System.err.println(e.getLocalizedMessage());
+            }
+        });
+    }
+
+    /**
+     * Waits for the queued accesses to be written. Must be called before the
+     * pool is closed.
+     */
+    @Override
+    public void close() {
+        this.writer.shutdown();
+
+        try {
+            if (!this.writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Gave up waiting for accesses to be recorded");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.booksly.app;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.Date;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.*;
 
@@ -16,9 +18,12 @@ import com.jcraft.jsch.Session;
 import com.jcraft.jsch.JSch;
 
 public class App {
-    private static final String URL_FORMAT = "jdbc:postgresql://localhost:%d/p32001_25";
+    // Statements run this many times on a connection are promoted to named
+    // server-side statements, which the statement registry keeps alive
+    private static final String URL_FORMAT = "jdbc:postgresql://localhost:%d/p32001_25?prepareThreshold=3&reWriteBatchedInserts=true";
 
     private static final String AUTH_FILE = "./auth.txt";
+    private static final String STATS_FILE = "./stats.txt";
 
     private static final int LOCAL_FORWARD_PORT = 4322;
     private static final int SSH_TUNNEL_PORT = 22;
@@ -27,28 +32,62 @@ public class App {
     private static final String REMOTE_MACHINE_HOST = "starbug.cs.rit.edu";
     private static final String REMOTE_DB_HOST = "127.0.0.1";
 
-    private Connection connection;
+    // Every connection shares the one SSH session, so this only bounds how
+    // many queries can be in flight over the tunnel at once
+    private static final int POOL_SIZE = 8;
+
+    private ConnectionPool pool;
     private Session session;
     private User user;
 
-    private static final Scanner INPUT = new Scanner(System.in);
+    private final Scanner input;
+
+    public App() {
+        this(new Scanner(System.in));
+    }
 
-    public Connection getConnection() {
-        return this.connection;
+    /**
+     * Creates an app that reads commands and prompt answers from the given
+     * scanner instead of standard input.
+     *
+     * @param input Where to read input from
+     */
+    App(Scanner input) {
+        this.input = input;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return this.pool;
+    }
+
+    User getUser() {
+        return this.user;
     }
 
     private int tunnel(String username, String password) throws JSchException {
-        JSch jsch = new JSch();
-        this.session = jsch.getSession(username, REMOTE_MACHINE_HOST, SSH_TUNNEL_PORT);
-        this.session.setPassword(password);
+        TunnelEvent event = new TunnelEvent();
+        event.begin();
+        event.reconnect = this.session != null;
+
+        try {
+            JSch jsch = new JSch();
+            this.session = jsch.getSession(username, REMOTE_MACHINE_HOST, SSH_TUNNEL_PORT);
+            this.session.setPassword(password);
 
-        Properties config = new Properties();
-        config.put("StrictHostKeyChecking", "no");
+            Properties config = new Properties();
+            config.put("StrictHostKeyChecking", "no");
 
-        this.session.setConfig(config);
-        this.session.connect();
+            this.session.setConfig(config);
+            this.session.connect();
 
-        return this.session.setPortForwardingL(LOCAL_FORWARD_PORT, REMOTE_DB_HOST, REMOTE_DB_PORT);
+            event.localPort = this.session.setPortForwardingL(LOCAL_FORWARD_PORT, REMOTE_DB_HOST, REMOTE_DB_PORT);
+            event.succeeded = true;
+
+            return event.localPort;
+        } finally {
+            event.host = REMOTE_MACHINE_HOST;
+            event.commit();
+        }
     }
 
     private static void logError(String message, Exception e) {
@@ -63,7 +102,10 @@ public class App {
 
             Class.forName("org.postgresql.Driver");
 
-            this.connection = DriverManager.getConnection(url, auth.getUsername(), auth.getPassword());
+            this.pool = new ConnectionPool(url, auth.getUsername(), auth.getPassword(), POOL_SIZE);
+
+            // Open the first connection eagerly so bad credentials fail here
+            this.pool.getConnection().close();
 
             return true;
         } catch (FileNotFoundException e) {
@@ -80,11 +122,13 @@ public class App {
     }
 
     private void signupCommand() throws SQLException {
+        User.clearCache();
+
         String username;
 
         while (true) {
             System.out.print("username: ");
-            username = INPUT.nextLine().strip();
+            username = this.input.nextLine().strip();
 
             if (!User.isUsernameTaken(username)) {
                 break;
@@ -94,13 +138,13 @@ public class App {
         }
 
         System.out.print("password: ");
-        String password = INPUT.nextLine().strip();
+        String password = this.input.nextLine().strip();
 
         String email;
 
         while (true) {
             System.out.print("email: ");
-            email = INPUT.nextLine().strip();
+            email = this.input.nextLine().strip();
 
             if (!User.isEmailTaken(email)) {
                 break;
@@ -110,17 +154,17 @@ public class App {
         }
 
         System.out.print("first name: ");
-        String firstName = INPUT.nextLine().strip();
+        String firstName = this.input.nextLine().strip();
 
         System.out.print("last name: ");
-        String lastName = INPUT.nextLine().strip();
+        String lastName = this.input.nextLine().strip();
 
         String salt = User.generateSalt();
         String passwordHash = User.hashPassword(password, salt);
         Timestamp now = Timestamp.from(Instant.now());
 
-        try {
-            PreparedStatement ps = this.connection.prepareStatement(
+        try (Connection connection = this.pool.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
                     "insert into users(user_id, username, password_hash, first_name, last_name, email, creation_date, last_access_date, password_salt) values (DEFAULT, ?, ?, ?, ?, ?, ?, ?, ?)");
 
             ps.setString(1, username);
@@ -150,53 +194,24 @@ public class App {
     }
 
     private void loginCommand(String username, String password) {
+        User.clearCache();
 
         try {
-            // get salt
-            PreparedStatement ps = this.connection.prepareStatement(
-                    "select password_salt from users where username = ?");
-            ps.setString(1, username);
-            ResultSet result = ps.executeQuery();
+            // Salt, hash and id all come from the one row
+            UserRecord record = User.findByUsername(username);
 
-            String salt = "";
-            if (result.next()) {
-                salt = result.getString(1);
-            } else {
+            if (record == null) {
                 System.out.println("No user found with that username");
                 return;
             }
 
-            // hash
-            String passwordHash = User.hashPassword(password, salt);
-
-            // check salted hash against DB
-            PreparedStatement ps2 = this.connection.prepareStatement(
-                    "select password_hash from users where username = ?");
-
-            ps2.setString(1, username);
-
-            ResultSet result2 = ps2.executeQuery();
-
-            if (result2.next()) {
-                String expectedHash = result2.getString(1);
+            if (User.isPasswordCorrect(record, password)) {
+                System.out.println("Correct password, you are now logged in");
 
-                if (expectedHash.equals(passwordHash)) {
-                    System.out.println("Correct password, you are now logged in");
-
-                    int userId = User.getUserId(username);
-
-                    if (userId == -1) {
-                        System.err.println("should exist");
-                        System.exit(1);
-                    }
-
-                    this.user = new User(userId);
-                    this.user.addAccess();
-                } else {
-                    System.out.println("Incorrect password, please try again");
-                }
+                this.user = new User(record);
+                this.user.addAccess();
             } else {
-                System.out.println("No user found with that username");
+                System.out.println("Incorrect password, please try again");
             }
         } catch (SQLException e) {
             System.err.println("Couldn't authenticate user");
@@ -296,35 +311,58 @@ public class App {
         }
     }
 
-    private static final List<String> VALID_FIELD_NAMES = List.of("title", "release date", "author", "publisher",
-            "genre");
+    private static final List<String> VALID_FIELD_NAMES = List.of("keywords", "title", "author", "publisher",
+            "genre", "audience", "release date", "release year", "rating");
 
-    private static final List<String> VALID_SORT_KEYS = List.of("title", "release year", "publisher", "genre");
+    private static final List<String> VALID_SORT_KEYS = List.of("relevance", "title", "release year", "publisher",
+            "genre");
 
     private void bookSearchCommand() throws SQLException {
-        String fieldName = null;
+        BookFilter filter = new BookFilter();
+        Set<String> fieldNames = new HashSet<>();
 
+        // Filters are combined until the user leaves the field name blank
         while (true) {
-            System.out.print("field name: ");
-            fieldName = INPUT.nextLine().strip();
+            System.out.print(filter.isEmpty() ? "field name: " : "field name (blank to search): ");
+            String fieldName = this.input.nextLine().strip();
 
-            if (VALID_FIELD_NAMES.contains(fieldName)) {
+            if (fieldName.isEmpty() && !filter.isEmpty()) {
                 break;
             }
 
-            System.out.println("Invalid field name, please try again");
-        }
+            if (!VALID_FIELD_NAMES.contains(fieldName)) {
+                System.out.println("Invalid field name, please try again");
+                continue;
+            }
 
-        System.out.print("search term: ");
-        String searchTerm = INPUT.nextLine().strip();
+            if (!fieldNames.add(fieldName)) {
+                System.out.println("Already searching by " + fieldName + ", please try again");
+                continue;
+            }
+
+            // Dates and years can be ranges, written as from..to
+            while (true) {
+                System.out.print("search term: ");
+                String searchTerm = this.input.nextLine().strip();
+
+                try {
+                    filter.add(fieldName, searchTerm);
+                    break;
+                } catch (IllegalArgumentException | DateTimeException e) {
+                    System.out.println("Invalid search term, please try again");
+                }
+            }
+        }
 
         String sortKey = null;
 
         while (true) {
             System.out.print("sort key: ");
-            sortKey = INPUT.nextLine().strip();
+            sortKey = this.input.nextLine().strip();
 
-            if (VALID_SORT_KEYS.contains(sortKey) || sortKey.isEmpty()) {
+            // Relevance is only scored for keyword searches
+            if ((VALID_SORT_KEYS.contains(sortKey) || sortKey.isEmpty())
+                    && (!sortKey.equals("relevance") || filter.hasKeywords())) {
                 break;
             }
 
@@ -332,14 +370,14 @@ public class App {
         }
 
         if (sortKey.isEmpty()) {
-            sortKey = "title";
+            sortKey = filter.hasKeywords() ? "relevance" : "title";
         }
 
         String ordering = null;
 
         while (true) {
             System.out.print("asc/desc: ");
-            ordering = INPUT.nextLine().strip();
+            ordering = this.input.nextLine().strip();
 
             if (ordering.equals("asc") || ordering.equals("desc") || ordering.isEmpty()) {
                 break;
@@ -349,83 +387,43 @@ public class App {
         }
 
         if (ordering.isEmpty()) {
-            ordering = "asc";
-        }
-
-        String query = "select b.book_id from book b where ";
-
-        String suffix = " order by ";
-
-        if (sortKey.equals("title")) {
-            suffix += "b.title ";
-        } else if (sortKey.equals("release year")) {
-            suffix += "extract(year from b.release_date) ";
-        } else if (sortKey.equals("publisher")) {
-            suffix += " (select c.name\r\n" + //
-                    "from contributor c\r\n" + //
-                    "inner join book_publisher bp\r\n" + //
-                    "on c.contributor_id = bp.publisher_id\r\n" + //
-                    "where bp.book_id = b.book_id\r\n" + //
-                    "order by c.name\r\n" + //
-                    "limit 1) ";
-        } else if (sortKey.equals("genre")) {
-            suffix += " (select g.name\r\n" + //
-                    "from genre g\r\n" + //
-                    "inner join book_genre bg\r\n" + //
-                    "on g.genre_id = bg.genre_id\r\n" + //
-                    "where bg.book_id = b.book_id\r\n" + //
-                    "order by g.name\r\n" + //
-                    "limit 1) ";
-        }
-
-        suffix += ordering;
-
-        PreparedStatement ps = null;
-
-        if (fieldName.equals("title")) {
-            query += "title = ?";
-            ps = this.connection.prepareStatement(query + suffix);
-            ps.setString(1, searchTerm);
-        } else if (fieldName.equals("release date")) {
-            query += "release_date = ?";
-            Date releaseDate = Date.valueOf(searchTerm);
-            ps = this.connection.prepareStatement(query + suffix);
-            ps.setDate(1, releaseDate);
-        } else if (fieldName.equals("author")) {
-            query += "b.book_id in\r\n" + //
-                    "(select ba.book_id\r\n" + //
-                    "from book_author ba inner join contributor c\r\n" + //
-                    "on ba.author_id = c.contributor_id\r\n" + //
-                    "where c.name = ?)";
-            ps = this.connection.prepareStatement(query + suffix);
-            ps.setString(1, searchTerm);
-        } else if (fieldName.equals("publisher")) {
-            query += "b.book_id in\r\n" + //
-                    "(select bp.book_id\r\n" + //
-                    "from book_publisher bp inner join contributor c\r\n" + //
-                    "on bp.publisher_id = c.contributor_id\r\n" + //
-                    "where c.name = ?)";
-            ps = this.connection.prepareStatement(query + suffix);
-            ps.setString(1, searchTerm);
-        } else if (fieldName.equals("genre")) {
-            query += "b.book_id in\r\n" + //
-                    "(select bg.book_id\r\n" + //
-                    "from book_genre bg inner join genre g\r\n" + //
-                    "on bg.genre_id = g.genre_id\r\n" + //
-                    "where g.name = ?)";
-            ps = this.connection.prepareStatement(query + suffix);
-            ps.setString(1, searchTerm);
-        }
-
-        ResultSet result = ps.executeQuery();
+            ordering = sortKey.equals("relevance") ? "desc" : "asc";
+        }
+
+        BookSearch search = new BookSearch(filter, sortKey, ordering);
 
         System.out.println();
 
-        while (result.next()) {
-            int bookId = result.getInt(1);
+        if (search.displayFirstPage() == 0) {
+            System.out.println("No books found");
+            return;
+        }
+
+        while (search.hasNext() || search.hasPrevious()) {
+            List<String> choices = new ArrayList<>();
+
+            if (search.hasNext()) {
+                choices.add("next");
+            }
+
+            if (search.hasPrevious()) {
+                choices.add("prev");
+            }
+
+            System.out.print("page " + search.getPage() + " (" + String.join("/", choices) + "/done): ");
+            String choice = this.input.nextLine().strip();
 
-            Book.displaySearchInformation(bookId);
             System.out.println();
+
+            if (choice.equals("next") && search.hasNext()) {
+                search.displayNextPage();
+            } else if (choice.equals("prev") && search.hasPrevious()) {
+                search.displayPreviousPage();
+            } else if (choice.equals("done") || choice.isEmpty()) {
+                break;
+            } else {
+                System.out.println("Invalid choice, please try again");
+            }
         }
     }
 
@@ -552,7 +550,67 @@ public class App {
         }
     }
 
-    private void recommendBookCommand(){
+    private void slowListCommand() {
+        List<SlowQueryLog.SlowQuery> queries = SlowQueryLog.getRecent();
+
+        if (queries.isEmpty()) {
+            System.out.println("No statements slower than " + SlowQueryLog.getThresholdMillis() + " ms yet");
+            return;
+        }
+
+        for (int i = 0; i < queries.size(); i++) {
+            SlowQueryLog.SlowQuery query = queries.get(i);
+
+            System.out.printf("%d. %.1f ms, %d rows, %s%n   %s%n", i + 1, query.nanos() / 1e6, query.rows(),
+                    query.caller(), query.sql().replaceAll("\\s+", " "));
+        }
+    }
+
+    private void slowExplainCommand(String arg) {
+        List<SlowQueryLog.SlowQuery> queries = SlowQueryLog.getRecent();
+        int number;
+
+        try {
+            number = Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: slow explain <number from slow list>");
+            return;
+        }
+
+        if (number < 1 || number > queries.size()) {
+            System.out.println("No slow statement with that number, see slow list");
+            return;
+        }
+
+        // A statement that can't be explained shouldn't end the session
+        try {
+            for (String line : SlowQueryLog.explain(this.pool, queries.get(number - 1))) {
+                System.out.println(line);
+            }
+        } catch (SQLException e) {
+            logError("Couldn't explain the statement", e);
+        }
+    }
+
+    private void slowThresholdCommand(String arg) {
+        long thresholdMillis;
+
+        try {
+            thresholdMillis = Long.parseLong(arg);
+        } catch (NumberFormatException e) {
+            thresholdMillis = -1;
+        }
+
+        if (thresholdMillis < 0) {
+            System.out.println("Usage: slow threshold <milliseconds>");
+            return;
+        }
+
+        SlowQueryLog.setThresholdMillis(thresholdMillis);
+        System.out.println("Logging statements slower than " + SlowQueryLog.getThresholdMillis() + " ms");
+    }
+
+    private void recommendBookCommand() throws SQLException {
         ArrayList<String> books = user.recommendBooks();
         int count = 1;
         for (String b : books) {
@@ -560,78 +618,228 @@ public class App {
         }
     }
 
-    private void executeCommand(String[] args) {
+    /**
+     * Works out which command a line of input is from its leading words.
+     *
+     * @param args The line, split into words
+     * @return The command's name, or null if it isn't a command
+     * @throws ArrayIndexOutOfBoundsException If the line is missing a word
+     *                                        the command needs
+     */
+    static String commandName(String[] args) {
+        if (args[0].equals("signup")) {
+            return "signup";
+        } else if (args[0].equals("login")) {
+            return "login";
+        } else if (args[0].equals("whoami")) {
+            return "whoami";
+        } else if (args[0].equals("user") && args[1].equals("search")) {
+            return "user search";
+        } else if (args[0].equals("user") && args[1].equals("follow")) {
+            return "user follow";
+        } else if (args[0].equals("user") && args[1].equals("unfollow")) {
+            return "user unfollow";
+        } else if (args[0].equals("user") && args[1].equals("profile")) {
+            return "user profile";
+        } else if (args[0].equals("book") && args[1].equals("search")) {
+            return "book search";
+        } else if (args[0].equals("book") && args[1].equals("rate")) {
+            return "book rate";
+        } else if (args[0].equals("book") && args[1].equals("read")) {
+            return "book read";
+        } else if (args[0].equals("collection") && args[1].equals("list")) {
+            return "collection list";
+        } else if (args[0].equals("collection") && args[1].equals("create")) {
+            return "collection create";
+        } else if (args[0].equals("collection") && args[1].equals("add")) {
+            return "collection add";
+        } else if (args[0].equals("collection") && args[1].equals("remove")) {
+            return "collection remove";
+        } else if (args[0].equals("collection") && args[1].equals("delete")) {
+            return "collection delete";
+        } else if (args[0].equals("collection") && args[1].equals("rename")) {
+            return "collection rename";
+        } else if (args.length == 2 && args[0].equals("popular") && args[1].equals("books")) {
+            return "popular books";
+        } else if (args[0].equals("top") && args[1].equals("releases")) {
+            return "top releases";
+        } else if (args[0].equals("popular") && args[1].equals("books") && args[2].equals("followers")) {
+            return "popular books followers";
+        } else if (args[0].equals("recommend")) {
+            return "recommend";
+        } else if (args[0].equals("pool") && args[1].equals("stats")) {
+            return "pool stats";
+        } else if (args[0].equals("slow") && args[1].equals("list")) {
+            return "slow list";
+        } else if (args[0].equals("slow") && args[1].equals("explain")) {
+            return "slow explain";
+        } else if (args[0].equals("slow") && args[1].equals("threshold")) {
+            return "slow threshold";
+        } else if (args.length == 2 && args[0].equals("stats") && args[1].equals("reset")) {
+            return "stats reset";
+        } else if (args[0].equals("stats")) {
+            return "stats";
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses a timestamp argument, written as 2024-01-31T12:00:00 or with a
+     * space instead of the T.
+     *
+     * @param arg The argument
+     * @return The timestamp
+     * @throws IllegalArgumentException If the argument isn't a timestamp
+     */
+    static Timestamp parseTimestamp(String arg) {
+        return Timestamp.valueOf(arg.replace("T", " "));
+    }
+
+    /**
+     * Runs one command, recording how long it took, how many roundtrips it
+     * made and how many rows it fetched, in the stats and as a Flight Recorder
+     * event. Commands that prompt for more input read it from the app's
+     * scanner.
+     *
+     * @param args The command's line, split into words
+     */
+    void executeCommand(String[] args) {
         try {
-            if (args[0].equals("signup")) {
+            String command = commandName(args);
+
+            if (command == null) {
+                System.out.println("Unknown command");
+                return;
+            }
+
+            CommandEvent event = new CommandEvent();
+            long roundtrips = Roundtrips.get();
+            long rows = Metrics.getThreadRows();
+            long startTime = System.nanoTime();
+
+            event.begin();
+
+            try {
+                runCommand(command, args);
+            } finally {
+                event.end();
+
+                roundtrips = Roundtrips.get() - roundtrips;
+                rows = Metrics.getThreadRows() - rows;
+                Metrics.recordCommand(command, System.nanoTime() - startTime, roundtrips, rows);
+
+                if (event.shouldCommit()) {
+                    event.command = command;
+                    event.userId = this.user == null ? 0 : this.user.getUserId();
+                    event.roundtrips = roundtrips;
+                    event.rows = rows;
+                    event.commit();
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("Missing arguments for previous command");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void runCommand(String command, String[] args) throws SQLException {
+        switch (command) {
+            case "signup":
                 signupCommand();
-            } else if (args[0].equals("login")) {
+                break;
+            case "login":
                 loginCommand(args[1], args[2]);
-            } else if (args[0].equals("whoami")) {
+                break;
+            case "whoami":
                 if (this.user == null) {
                     System.out.println("You are not currently logged in");
                 } else {
-                    System.out.println(
-                            "You are logged in as " + this.user.getUsername() + " (id = " + this.user.getUserId()
-                                    + ")");
+                    System.out.println("You are logged in as " + this.user.getUsername() + " (id = "
+                            + this.user.getUserId() + ")");
                 }
-            } else if (args[0].equals("user") && args[1].equals("search")) {
+                break;
+            case "user search":
                 userSearchCommand(args[2]);
-            } else if (args[0].equals("user") && args[1].equals("follow")) {
+                break;
+            case "user follow":
                 userFollowCommand(args[2]);
-            } else if (args[0].equals("user") && args[1].equals("unfollow")) {
+                break;
+            case "user unfollow":
                 userUnfollowCommand(args[2]);
-            } else if (args[0].equals("user") && args[1].equals("profile")) {
+                break;
+            case "user profile":
                 userProfileCommand(args[2], args[3]);
-            } else if (args[0].equals("book") && args[1].equals("search")) {
+                break;
+            case "book search":
                 bookSearchCommand();
-            } else if (args[0].equals("book") && args[1].equals("rate")) {
-                int bookId = Integer.parseInt(args[2]);
-                int rating = Integer.parseInt(args[3]);
-
-                bookRateCommand(bookId, rating);
-            } else if (args[0].equals("book") && args[1].equals("read")) {
+                break;
+            case "book rate":
+                bookRateCommand(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+                break;
+            case "book read":
                 if (args[2].equals("random")) {
-                    Timestamp startTime = Timestamp.valueOf(args[3].replace("T", " "));
-                    Timestamp endTime = Timestamp.valueOf(args[4].replace("T", " "));
-
-                    bookReadRandomCommand(startTime, endTime);
+                    bookReadRandomCommand(parseTimestamp(args[3]), parseTimestamp(args[4]));
                 } else {
                     int bookId = Integer.parseInt(args[2]);
                     int startPage = Integer.parseInt(args[3]);
                     int endPage = Integer.parseInt(args[4]);
-                    Timestamp startTime = Timestamp.valueOf(args[5].replace("T", " "));
-                    Timestamp endTime = Timestamp.valueOf(args[6].replace("T", " "));
 
-                    bookReadCommand(bookId, startPage, endPage, startTime, endTime);
+                    bookReadCommand(bookId, startPage, endPage, parseTimestamp(args[5]),
+                            parseTimestamp(args[6]));
                 }
-            } else if (args[0].equals("collection") && args[1].equals("list")) {
+                break;
+            case "collection list":
                 collectionListCommand();
-            } else if (args[0].equals("collection") && args[1].equals("create")) {
+                break;
+            case "collection create":
                 collectionCreateCommand(args[2]);
-            } else if (args[0].equals("collection") && args[1].equals("add")) {
+                break;
+            case "collection add":
                 collectionAddCommand(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
-            } else if (args[0].equals("collection") && args[1].equals("remove")) {
+                break;
+            case "collection remove":
                 collectionRemoveCommand(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
-            } else if (args[0].equals("collection") && args[1].equals("delete")) {
+                break;
+            case "collection delete":
                 collectionDeleteCommand(Integer.parseInt(args[2]));
-            } else if (args[0].equals("collection") && args[1].equals("rename")) {
+                break;
+            case "collection rename":
                 collectionRenameCommand(Integer.parseInt(args[2]), args[3]);
-            } else if (args.length == 2 && args[0].equals("popular") && args[1].equals("books")) {
+                break;
+            case "popular books":
                 popularBooksCommand();
-            } else if (args[0].equals("top") && args[1].equals("releases")) {
+                break;
+            case "top releases":
                 topReleasesCommand();
-            } else if (args[0].equals("popular") && args[1].equals("books") && args[2].equals("followers")) {
+                break;
+            case "popular books followers":
                 popularBooksFollowersCommand();
-            } else if (args[0].equals("recommend")){
+                break;
+            case "recommend":
                 recommendBookCommand();
-            } else {
-                System.out.println("Unknown command");
-            }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.out.println("Missing arguments for previous command");
-        } catch (SQLException e) {
-            e.printStackTrace();
-            System.exit(1);
+                break;
+            case "pool stats":
+                System.out.println(this.pool.getStats());
+                System.out.println(StatementRegistry.getStats());
+                break;
+            case "stats":
+                System.out.print(Metrics.report());
+                break;
+            case "stats reset":
+                Metrics.reset();
+                break;
+            case "slow list":
+                slowListCommand();
+                break;
+            case "slow explain":
+                slowExplainCommand(args[2]);
+                break;
+            case "slow threshold":
+                slowThresholdCommand(args[2]);
+                break;
         }
     }
 
@@ -639,30 +847,43 @@ public class App {
         while (true) {
             System.out.print("> ");
 
-            String input = INPUT.nextLine().strip();
+            String line = this.input.nextLine().strip();
+
+            if (line.equals("quit")) {
+                User.closeAccessLog();
+                SlowQueryLog.close();
+                saveStats();
 
-            if (input.equals("quit")) {
                 if (this.session != null && this.session.isConnected()) {
                     this.session.disconnect();
                 }
 
-                try {
-                    if (this.connection != null && !this.connection.isClosed()) {
-                        this.connection.close();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
+                if (this.pool != null) {
+                    this.pool.close();
                 }
 
                 System.exit(0);
             }
 
-            String[] command = input.split("\\s+");
+            String[] command = line.split("\\s+");
 
             executeCommand(command);
         }
     }
 
+    private static void saveStats() {
+        if (Metrics.isEmpty()) {
+            return;
+        }
+
+        try {
+            Files.writeString(Path.of(STATS_FILE), Metrics.report());
+            System.out.println("Command and query stats saved to " + STATS_FILE);
+        } catch (IOException e) {
+            logError("Couldn't save stats", e);
+        }
+    }
+
     private void run() {
         boolean success = connect();
 
@@ -671,12 +892,39 @@ public class App {
             return;
         }
 
-        User.setConnection(connection);
-        Book.setConnection(connection);
+        if (!start(this.pool)) {
+            return;
+        }
 
         inputLoop();
     }
 
+    /**
+     * Migrates the database and points the data classes at a pool, ready for
+     * commands to run.
+     *
+     * @param pool The pool to run commands with
+     * @return Whether the app started, which it doesn't if the schema couldn't
+     *         be updated, in which case the pool is closed
+     */
+    boolean start(ConnectionPool pool) {
+        this.pool = pool;
+
+        try {
+            Schema.apply(pool);
+        } catch (SQLException e) {
+            logError("Couldn't update the database schema", e);
+            pool.close();
+            return false;
+        }
+
+        User.setConnectionPool(pool);
+        Book.setConnectionPool(pool);
+        BookSearch.setConnectionPool(pool);
+
+        return true;
+    }
+
     public static void main(String[] args) {
         App app = new App();
 
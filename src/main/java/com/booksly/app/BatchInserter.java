@@ -0,0 +1,119 @@
+package com.booksly.app;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts rows into one table in JDBC batches, committing after each batch
+ * together with the load's checkpoint. With reWriteBatchedInserts on the
+ * connection URL the driver sends each batch as a few multi-row inserts, so
+ * loading costs a roundtrip and a commit per batch rather than per row.
+ */
+class BatchInserter implements RowWriter {
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final LoadCheckpoint checkpoint;
+    private final int batchSize;
+
+    private int column = 1;
+    private int pending;
+    private long rows;
+
+    /**
+     * Starts a load. Turns autocommit off on the connection until the
+     * inserter is closed.
+     *
+     * @param connection The connection to insert on
+     * @param tableName  The table to load
+     * @param columns    The columns each row has values for
+     * @param batchSize  The number of rows to send and commit at a time
+     * @param checkpoint The checkpoint to save with each batch
+     * @throws SQLException If the statement couldn't be prepared
+     */
+    BatchInserter(Connection connection, String tableName, List<String> columns, int batchSize,
+            LoadCheckpoint checkpoint) throws SQLException {
+        this.connection = connection;
+        this.statement = connection.prepareStatement("insert into " + tableName + "(" + String.join(", ", columns)
+                + ") values (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")");
+        this.batchSize = batchSize;
+        this.checkpoint = checkpoint;
+
+        connection.setAutoCommit(false);
+    }
+
+    @Override
+    public void writeInt(int value) throws SQLException {
+        this.statement.setInt(this.column++, value);
+    }
+
+    @Override
+    public void writeText(CharSequence value) throws SQLException {
+        this.statement.setString(this.column++, value.toString());
+    }
+
+    @Override
+    public void writeDate(long epochMillis) throws SQLException {
+        this.statement.setDate(this.column++, new Date(epochMillis));
+    }
+
+    @Override
+    public void writeTimestamp(long epochMillis) throws SQLException {
+        this.statement.setTimestamp(this.column++, new Timestamp(epochMillis));
+    }
+
+    /**
+     * Adds the row whose values were just written, sending the batch once
+     * it's full.
+     *
+     * @throws SQLException If the batch failed, in which case it's rolled back
+     */
+    @Override
+    public void endRow() throws SQLException {
+        this.statement.addBatch();
+        this.column = 1;
+        this.pending++;
+
+        if (this.pending == this.batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (this.pending == 0) {
+            return;
+        }
+
+        try {
+            this.statement.executeBatch();
+            this.checkpoint.save(this.connection, this.rows + this.pending);
+            this.connection.commit();
+        } catch (SQLException e) {
+            this.statement.clearBatch();
+            this.pending = 0;
+            this.connection.rollback();
+            throw e;
+        }
+
+        this.rows += this.pending;
+        this.pending = 0;
+    }
+
+    @Override
+    public long getRowCount() {
+        return this.rows + this.pending;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            this.connection.setAutoCommit(true);
+        }
+    }
+}
@@ -6,21 +6,20 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 public class Book {
     private int bookId;
 
-    private static Connection CONNECTION;
+    private static ConnectionPool POOL;
 
-    public static void setConnection(Connection connection) {
-        CONNECTION = connection;
+    public static void setConnectionPool(ConnectionPool pool) {
+        POOL = pool;
     }
 
     public static boolean doesBookExist(int bookId) {
-        try {
-            PreparedStatement ps = CONNECTION
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
                     .prepareStatement("select count(*) from book where book_id = ?");
 
             ps.setInt(1, bookId);
@@ -38,125 +37,9 @@ public class Book {
         return false;
     }
 
-    public static void displaySearchInformation(int bookId) throws SQLException {
-        String query = "select b.title, b.length, b.audience from book b where b.book_id = ?";
-
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-
-        ps.setInt(1, bookId);
-
-        ResultSet result = ps.executeQuery();
-
-        if (!result.next()) {
-            throw new SQLException("Book not found");
-        }
-
-        String title = result.getString(1);
-        int length = result.getInt(2);
-        String audience = result.getString(3);
-
-        Book book = new Book(bookId);
-
-        List<String> authorNames = book.getAuthorNames();
-        List<String> publisherNames = book.getPublisherNames();
-        List<Rating> ratings = book.getRatings();
-
-        System.out.println("Title: " + title);
-        System.out.println("Length: " + length);
-        System.out.println("Audience: " + audience);
-
-        System.out.println("Authors:");
-
-        for (String authorName : authorNames) {
-            System.out.println("- " + authorName);
-        }
-
-        System.out.println("Publishers:");
-
-        for (String publisherName : publisherNames) {
-            System.out.println("- " + publisherName);
-        }
-
-        System.out.println("Ratings:");
-
-        for (Rating rating : ratings) {
-            System.out.println("- " + rating.username() + " (" + rating.rating() + ")");
-        }
-    }
-
-    private List<String> getAuthorNames() throws SQLException {
-        List<String> authors = new ArrayList<>();
-
-        String query = "select c.name\r\n" + //
-                "from contributor c\r\n" + //
-                "inner join book_author ba\r\n" + //
-                "on c.contributor_id = ba.author_id\r\n" + //
-                "where ba.book_id = ?\r\n" + //
-                "order by c.name";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.bookId);
-
-        ResultSet result = ps.executeQuery();
-
-        while (result.next()) {
-            String authorName = result.getString(1);
-
-            authors.add(authorName);
-        }
-
-        return authors;
-    }
-
-    private List<String> getPublisherNames() throws SQLException {
-        List<String> publishers = new ArrayList<>();
-
-        String query = "select c.name\r\n" + //
-                "from contributor c\r\n" + //
-                "inner join book_publisher bp\r\n" + //
-                "on c.contributor_id = bp.publisher_id\r\n" + //
-                "where bp.book_id = ?\r\n" + //
-                "order by c.name";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.bookId);
-
-        ResultSet result = ps.executeQuery();
-
-        while (result.next()) {
-            String publisherName = result.getString(1);
-
-            publishers.add(publisherName);
-        }
-
-        return publishers;
-    }
-
-    private List<Rating> getRatings() throws SQLException {
-        List<Rating> ratings = new ArrayList<>();
-
-        String query = "select u.username, r.rating\r\n" + //
-                "from users u\r\n" + //
-                "inner join rating r\r\n" + //
-                "on u.user_id = r.user_id\r\n" + //
-                "where r.book_id = ?\r\n" + //
-                "order by r.rating desc, u.username";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.bookId);
-
-        ResultSet result = ps.executeQuery();
-
-        while (result.next()) {
-            String username = result.getString(1);
-            int rating = result.getInt(2);
-
-            ratings.add(new Rating(username, rating));
-        }
-
-        return ratings;
-    }
-
     public static int getRandomBookId() {
-        try {
-            PreparedStatement ps = CONNECTION
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
                     .prepareStatement("select book_id from book order by random() limit 1");
 
             ResultSet result = ps.executeQuery();
@@ -177,13 +60,15 @@ public class Book {
     }
 
     public String getTitle() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("select title from book where book_id = ?");
-        ps.setInt(1, this.bookId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("select title from book where book_id = ?");
+            ps.setInt(1, this.bookId);
 
-        ResultSet result = ps.executeQuery();
-        result.next();
-        return result.getString(1);
+            ResultSet result = ps.executeQuery();
+            result.next();
+            return result.getString(1);
+        }
     }
 
     /**
@@ -193,8 +78,8 @@ public class Book {
      * @return The number of pages in the book
      */
     public int getLength() {
-        try {
-            PreparedStatement ps = CONNECTION
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
                     .prepareStatement("select length from book where book_id = ?");
 
             ps.setInt(1, this.bookId);
@@ -213,8 +98,8 @@ public class Book {
     }
 
     public static ArrayList<String> getPopularBooks() {
-        try {
-            PreparedStatement ps = CONNECTION.prepareStatement(
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
                     "select title from book b join session s on b.book_id = s.book_id " +
                             "where s.start_time > current_date - 90 " +
                             "group by b.book_id order by count(s.book_id) desc limit 20");
@@ -234,11 +119,11 @@ public class Book {
     }
 
     public static ArrayList<String> getTopReleases() {
-        try {
-            PreparedStatement ps = CONNECTION.prepareStatement(
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
                     "select title from book b join rating r on b.book_id = r.book_id " +
-                            "where extract(month from b.release_date) = extract(month from current_timestamp) and " +
-                            "extract(year from b.release_date) = extract(year from current_date) " +
+                            "where b.release_date >= date_trunc('month', current_date) and " +
+                            "b.release_date < date_trunc('month', current_date) + interval '1 month' " +
                             "group by b.book_id order by avg(r.rating) desc limit 5");
 
             ResultSet result = ps.executeQuery();
@@ -270,15 +155,17 @@ public class Book {
                 "on g.genre_id = bg.genre_id\r\n" + //
                 "where b.book_id = ? and g.name = ?);";
 
-        // Create the statement and set the book ID and genre name
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.bookId);
-        ps.setString(2, genreName);
+        try (Connection connection = POOL.getConnection()) {
+            // Create the statement and set the book ID and genre name
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, this.bookId);
+            ps.setString(2, genreName);
 
-        // Execute the query and return the result
-        ResultSet result = ps.executeQuery();
-        result.next();
-        return result.getBoolean(1);
+            // Execute the query and return the result
+            ResultSet result = ps.executeQuery();
+            result.next();
+            return result.getBoolean(1);
+        }
     }
 
     /**
@@ -290,16 +177,18 @@ public class Book {
     public Set<Integer> getGenreIDs() throws SQLException {
         String query = "select bg.genre_id from book_genre bg where bg.book_id = ?";
 
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.bookId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, this.bookId);
 
-        ResultSet result = ps.executeQuery();
-        Set<Integer> ids = new HashSet<>();
+            ResultSet result = ps.executeQuery();
+            Set<Integer> ids = new HashSet<>();
 
-        while (result.next()) {
-            ids.add(result.getInt(1));
-        }
+            while (result.next()) {
+                ids.add(result.getInt(1));
+            }
 
-        return ids;
+            return ids;
+        }
     }
 }
@@ -0,0 +1,263 @@
+package com.booksly.app;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the where clause of a book search from any number of filters, all of
+ * which a book must match. Each filter is written so Postgres can answer it
+ * from an index: dates and years become ranges on release_date, and names
+ * are looked up through the contributor and genre tables before joining back
+ * to book. The indexes are created by db/migration/V4__book_filter_indexes.sql.
+ *
+ * The SQL refers to the book table as b.
+ */
+public class BookFilter {
+    private final List<String> joins = new ArrayList<>();
+    private final List<Object> joinParameters = new ArrayList<>();
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> conditionParameters = new ArrayList<>();
+
+    private boolean keywords;
+
+    /**
+     * Adds a filter from a field name and search term as the user typed them.
+     * Ranges are written as from..to, and either end can be left off.
+     *
+     * @param fieldName  One of keywords, title, author, publisher, genre,
+     *                   audience, release date, release year or rating
+     * @param searchTerm The value or range the field must match
+     * @return This filter
+     * @throws IllegalArgumentException If the search term isn't valid for the
+     *                                  field
+     */
+    public BookFilter add(String fieldName, String searchTerm) {
+        if (fieldName.equals("keywords")) {
+            return keywords(searchTerm);
+        } else if (fieldName.equals("title")) {
+            return title(searchTerm);
+        } else if (fieldName.equals("author")) {
+            return author(searchTerm);
+        } else if (fieldName.equals("publisher")) {
+            return publisher(searchTerm);
+        } else if (fieldName.equals("genre")) {
+            return genre(searchTerm);
+        } else if (fieldName.equals("audience")) {
+            return audience(searchTerm);
+        } else if (fieldName.equals("release date")) {
+            String[] range = splitRange(searchTerm);
+            LocalDate from = range[0].isEmpty() ? null : LocalDate.parse(range[0]);
+            LocalDate to = range[1].isEmpty() ? null : LocalDate.parse(range[1]);
+
+            return releasedBetween(from, to == null ? null : to.plusDays(1));
+        } else if (fieldName.equals("release year")) {
+            String[] range = splitRange(searchTerm);
+            LocalDate from = range[0].isEmpty() ? null : LocalDate.of(Integer.parseInt(range[0]), 1, 1);
+            LocalDate to = range[1].isEmpty() ? null : LocalDate.of(Integer.parseInt(range[1]) + 1, 1, 1);
+
+            return releasedBetween(from, to);
+        } else if (fieldName.equals("rating")) {
+            return minimumRating(Double.parseDouble(searchTerm));
+        }
+
+        throw new IllegalArgumentException("Unknown field name: " + fieldName);
+    }
+
+    // A single value is a range that starts and ends on it
+    private static String[] splitRange(String searchTerm) {
+        int separator = searchTerm.indexOf("..");
+
+        if (searchTerm.isBlank()) {
+            throw new IllegalArgumentException("A range needs at least one end");
+        } else if (separator == -1) {
+            return new String[] { searchTerm.strip(), searchTerm.strip() };
+        }
+
+        String[] range = { searchTerm.substring(0, separator).strip(), searchTerm.substring(separator + 2).strip() };
+
+        if (range[0].isEmpty() && range[1].isEmpty()) {
+            throw new IllegalArgumentException("A range needs at least one end");
+        }
+
+        return range;
+    }
+
+    /**
+     * Matches books whose title, authors or publishers contain every word as
+     * a prefix, or that are close to the search term. See db/migration/V3__book_search.sql.
+     *
+     * @param searchTerm The words to look for
+     * @return This filter
+     */
+    public BookFilter keywords(String searchTerm) {
+        if (this.keywords) {
+            throw new IllegalArgumentException("Keywords can only be searched once");
+        }
+
+        this.keywords = true;
+
+        this.joins.add("inner join book_search s on s.book_id = b.book_id\r\n" + //
+                "cross join (select to_tsquery('simple', ?) as query, ?::text as term) q");
+        this.joinParameters.add(toPrefixQuery(searchTerm));
+        this.joinParameters.add(searchTerm);
+
+        // Both halves are answered by their own GIN index
+        this.conditions.add("(s.vector @@ q.query or q.term <% s.document)");
+
+        return this;
+    }
+
+    public BookFilter title(String title) {
+        return condition("b.title = ?", title);
+    }
+
+    public BookFilter author(String name) {
+        return condition("b.book_id in\r\n" + //
+                "(select ba.book_id\r\n" + //
+                "from book_author ba inner join contributor c\r\n" + //
+                "on ba.author_id = c.contributor_id\r\n" + //
+                "where c.name = ?)", name);
+    }
+
+    public BookFilter publisher(String name) {
+        return condition("b.book_id in\r\n" + //
+                "(select bp.book_id\r\n" + //
+                "from book_publisher bp inner join contributor c\r\n" + //
+                "on bp.publisher_id = c.contributor_id\r\n" + //
+                "where c.name = ?)", name);
+    }
+
+    public BookFilter genre(String name) {
+        return condition("b.book_id in\r\n" + //
+                "(select bg.book_id\r\n" + //
+                "from book_genre bg inner join genre g\r\n" + //
+                "on bg.genre_id = g.genre_id\r\n" + //
+                "where g.name = ?)", name);
+    }
+
+    public BookFilter audience(String audience) {
+        return condition("b.audience = ?", audience);
+    }
+
+    /**
+     * Matches books released in a range of dates.
+     *
+     * @param from The first date in the range, or null for no lower bound
+     * @param to   The day after the last date in the range, or null for no
+     *             upper bound
+     * @return This filter
+     */
+    public BookFilter releasedBetween(LocalDate from, LocalDate to) {
+        if (from != null) {
+            condition("b.release_date >= ?", Date.valueOf(from));
+        }
+
+        if (to != null) {
+            condition("b.release_date < ?", Date.valueOf(to));
+        }
+
+        return this;
+    }
+
+    /**
+     * Matches books whose average rating is at least the given value. Books
+     * nobody has rated never match.
+     *
+     * @param rating The lowest average rating to include
+     * @return This filter
+     */
+    public BookFilter minimumRating(double rating) {
+        // Correlated so it only averages the ratings of books that passed the
+        // other filters, each read from the (book_id, rating) index
+        return condition("(select avg(r.rating) from rating r where r.book_id = b.book_id) >= ?", rating);
+    }
+
+    /**
+     * Turns a search term into a tsquery that requires every word, each
+     * matched as a prefix. Anything that isn't a letter or digit separates
+     * words, so the user can't inject tsquery operators.
+     * 
+     * @param searchTerm The words the user typed
+     * @return The query text for to_tsquery
+     */
+    static String toPrefixQuery(String searchTerm) {
+        List<String> words = new ArrayList<>();
+
+        for (String word : searchTerm.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word + ":*");
+            }
+        }
+
+        return String.join(" & ", words);
+    }
+
+    private BookFilter condition(String sql, Object parameter) {
+        this.conditions.add(sql);
+        this.conditionParameters.add(parameter);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return this.conditions.isEmpty();
+    }
+
+    /**
+     * Whether the filter includes a keyword search, which relevance sorting
+     * needs.
+     *
+     * @return True if keywords were added
+     */
+    public boolean hasKeywords() {
+        return this.keywords;
+    }
+
+    /**
+     * Gets the joins the conditions depend on, each on its own line.
+     *
+     * @return The joins, or an empty string if there are none
+     */
+    String getJoins() {
+        StringBuilder sql = new StringBuilder();
+
+        for (String join : this.joins) {
+            sql.append(join).append("\r\n");
+        }
+
+        return sql.toString();
+    }
+
+    /**
+     * Gets the conditions a book must match, joined with and.
+     *
+     * @return The conditions, or true if there are none
+     */
+    String getConditions() {
+        return this.conditions.isEmpty() ? "true" : String.join("\r\nand ", this.conditions);
+    }
+
+    /**
+     * Binds the parameters of the joins and then the conditions, in the order
+     * they appear in the SQL.
+     *
+     * @param ps    The statement to bind the parameters to
+     * @param index The index of the first parameter
+     * @return The index of the next parameter after the filter's
+     * @throws SQLException If a parameter couldn't be bound
+     */
+    int bind(PreparedStatement ps, int index) throws SQLException {
+        for (Object parameter : this.joinParameters) {
+            ps.setObject(index++, parameter);
+        }
+
+        for (Object parameter : this.conditionParameters) {
+            ps.setObject(index++, parameter);
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,293 @@
+package com.booksly.app;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs a book search and prints the matching books a page at a time. Authors,
+ * publishers and ratings are aggregated into arrays in the same query, so a
+ * page takes a single roundtrip no matter how many books are on it.
+ *
+ * Pages are found by seeking past the sort key and id of the last book shown
+ * rather than with an offset, so later pages cost the same as the first.
+ *
+ * Keyword searches match every word as a prefix of a word in the title,
+ * author names or publisher names, falling back to trigram similarity for
+ * misspellings, and can be sorted by relevance. See db/migration/V3__book_search.sql.
+ */
+public class BookSearch {
+    private static ConnectionPool POOL;
+
+    public static void setConnectionPool(ConnectionPool pool) {
+        POOL = pool;
+    }
+
+    public static final int PAGE_SIZE = 10;
+
+    // One more than a page, so the row that tells us there's a next page
+    // arrives in the same fetch
+    private static final int FETCH_SIZE = PAGE_SIZE + 1;
+
+    private static final String SELECT_RESULTS = "select b.book_id, b.title, b.length, b.audience,\r\n" + //
+            "a.names, p.names, r.usernames, r.ratings, b.sort_key\r\n" + //
+            "from (";
+
+    // Joined onto the page of books only, so the aggregates run for at most a
+    // page worth of rows rather than for every match
+    private static final String AGGREGATES = ") b\r\n" + //
+            "left join lateral (select array_agg(c.name order by c.name) as names\r\n" + //
+            "    from book_author ba inner join contributor c\r\n" + //
+            "    on c.contributor_id = ba.author_id\r\n" + //
+            "    where ba.book_id = b.book_id) a on true\r\n" + //
+            "left join lateral (select array_agg(c.name order by c.name) as names\r\n" + //
+            "    from book_publisher bp inner join contributor c\r\n" + //
+            "    on c.contributor_id = bp.publisher_id\r\n" + //
+            "    where bp.book_id = b.book_id) p on true\r\n" + //
+            "left join lateral (select array_agg(u.username order by r.rating desc, u.username) as usernames,\r\n" + //
+            "    array_agg(r.rating order by r.rating desc, u.username) as ratings\r\n" + //
+            "    from rating r inner join users u\r\n" + //
+            "    on u.user_id = r.user_id\r\n" + //
+            "    where r.book_id = b.book_id) r on true\r\n";
+
+    private final BookFilter filter;
+    private final String sortKey;
+    private final String ordering;
+
+    // Sort key and id of the first and last books on the current page
+    private Object firstKey;
+    private int firstId;
+    private Object lastKey;
+    private int lastId;
+
+    private int page;
+    private boolean hasNext;
+    private boolean hasPrevious;
+
+    /**
+     * Creates a search. Assumes the sort key and ordering have already been
+     * validated.
+     * 
+     * @param filter   The filters the books must match
+     * @param sortKey  The key to sort the results by
+     * @param ordering Either asc or desc
+     */
+    public BookSearch(BookFilter filter, String sortKey, String ordering) {
+        this.filter = filter;
+        this.sortKey = sortKey;
+        this.ordering = ordering;
+    }
+
+    private String getSortExpression() {
+        if (this.sortKey.equals("relevance")) {
+            // Title words outweigh author words, which outweigh publisher words
+            return "ts_rank(s.vector, q.query) + word_similarity(q.term, s.document)";
+        } else if (this.sortKey.equals("release year")) {
+            // Orders the same as the year, but can be read from an index
+            return "b.release_date";
+        } else if (this.sortKey.equals("publisher")) {
+            // Kept up to date by triggers, see db/migration/V2__book_sort_keys.sql
+            return "b.primary_publisher";
+        } else if (this.sortKey.equals("genre")) {
+            return "b.primary_genre";
+        } else {
+            return "b.title";
+        }
+    }
+
+    public int getPage() {
+        return this.page;
+    }
+
+    public boolean hasNext() {
+        return this.hasNext;
+    }
+
+    public boolean hasPrevious() {
+        return this.hasPrevious;
+    }
+
+    /**
+     * Prints the first page of results, each book as its row arrives.
+     * 
+     * @return The number of books on the page
+     * @throws SQLException If there was an error running the query
+     */
+    public int displayFirstPage() throws SQLException {
+        this.page = 1;
+        return displayForward(false);
+    }
+
+    /**
+     * Prints the page after the current one. Assumes there is one.
+     * 
+     * @return The number of books on the page
+     * @throws SQLException If there was an error running the query
+     */
+    public int displayNextPage() throws SQLException {
+        this.page++;
+        return displayForward(true);
+    }
+
+    /**
+     * Prints the page before the current one. Assumes there is one.
+     * 
+     * @return The number of books on the page
+     * @throws SQLException If there was an error running the query
+     */
+    public int displayPreviousPage() throws SQLException {
+        this.page--;
+
+        // Seek backwards from the first book shown, then flip the page back
+        // into display order
+        List<BookSearchResult> results = new ArrayList<>(PAGE_SIZE);
+
+        this.hasPrevious = false;
+
+        try (Connection connection = POOL.getConnection()) {
+            ResultSet result = executePage(connection, this.firstKey, this.firstId, true);
+
+            while (result.next()) {
+                if (results.size() == PAGE_SIZE) {
+                    this.hasPrevious = true;
+                    break;
+                }
+
+                results.add(readResult(result));
+                this.firstKey = result.getObject(9);
+                this.firstId = result.getInt(1);
+            }
+        }
+
+        Collections.reverse(results);
+
+        for (BookSearchResult bookResult : results) {
+            bookResult.display();
+            System.out.println();
+        }
+
+        if (!results.isEmpty()) {
+            this.lastKey = results.get(results.size() - 1).sortKey();
+            this.lastId = results.get(results.size() - 1).bookId();
+        }
+
+        this.hasNext = true;
+
+        return results.size();
+    }
+
+    private int displayForward(boolean afterLast) throws SQLException {
+        int count = 0;
+
+        this.hasNext = false;
+        this.hasPrevious = afterLast;
+
+        try (Connection connection = POOL.getConnection()) {
+            ResultSet result = afterLast ? executePage(connection, this.lastKey, this.lastId, false)
+                    : executePage(connection, null, 0, false);
+
+            while (result.next()) {
+                if (count == PAGE_SIZE) {
+                    this.hasNext = true;
+                    break;
+                }
+
+                readResult(result).display();
+                System.out.println();
+
+                if (count == 0) {
+                    this.firstKey = result.getObject(9);
+                    this.firstId = result.getInt(1);
+                }
+
+                this.lastKey = result.getObject(9);
+                this.lastId = result.getInt(1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Runs the query for one page, plus one extra row to tell whether there is
+     * another page in the same direction.
+     * 
+     * @param connection The connection to run the query on
+     * @param key        The sort key to seek past, or null for the first page
+     * @param bookId     The book id to seek past, for ties on the sort key
+     * @param backward   Whether to seek towards the start of the results
+     * @return The rows of the page, in the order they were read
+     * @throws SQLException If there was an error running the query
+     */
+    private ResultSet executePage(Connection connection, Object key, int bookId, boolean backward)
+            throws SQLException {
+        boolean descending = this.ordering.equals("desc") != backward;
+        String direction = descending ? "desc" : "asc";
+        String sortExpression = getSortExpression();
+
+        String orderBy = "order by sort_key " + direction + ", b.book_id " + direction;
+
+        String page = "select b.book_id, b.title, b.length, b.audience, " + sortExpression + " as sort_key\r\n" + //
+                "from book b\r\n" + //
+                this.filter.getJoins() + //
+                "where " + this.filter.getConditions();
+
+        if (key != null) {
+            page += "\r\nand (" + sortExpression + ", b.book_id) " + (descending ? "<" : ">") + " (?, ?)";
+        }
+
+        page += "\r\n" + orderBy + "\r\nlimit ?";
+
+        String query = SELECT_RESULTS + page + AGGREGATES + orderBy.replace("sort_key", "b.sort_key");
+
+        // The driver only fetches in batches through a cursor inside a
+        // transaction, otherwise it buffers every row before returning
+        connection.setAutoCommit(false);
+
+        PreparedStatement ps = connection.prepareStatement(query);
+        ps.setFetchSize(FETCH_SIZE);
+
+        int index = this.filter.bind(ps, 1);
+
+        if (key != null) {
+            ps.setObject(index++, key);
+            ps.setInt(index++, bookId);
+        }
+
+        ps.setInt(index, PAGE_SIZE + 1);
+
+        return ps.executeQuery();
+    }
+
+    private static BookSearchResult readResult(ResultSet result) throws SQLException {
+        List<String> authors = toList(result.getArray(5));
+        List<String> publishers = toList(result.getArray(6));
+        List<String> usernames = toList(result.getArray(7));
+        List<Integer> ratingValues = toList(result.getArray(8));
+
+        List<Rating> ratings = new ArrayList<>(usernames.size());
+
+        for (int i = 0; i < usernames.size(); i++) {
+            ratings.add(new Rating(usernames.get(i), ratingValues.get(i)));
+        }
+
+        return new BookSearchResult(result.getInt(1), result.getString(2), result.getInt(3), result.getString(4),
+                authors, publishers, ratings, result.getObject(9));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> toList(Array array) throws SQLException {
+        // array_agg over no rows gives null rather than an empty array
+        if (array == null) {
+            return List.of();
+        }
+
+        return List.of((T[]) array.getArray());
+    }
+}
@@ -0,0 +1,31 @@
+package com.booksly.app;
+
+import java.util.List;
+
+public record BookSearchResult(int bookId, String title, int length, String audience, List<String> authors,
+        List<String> publishers, List<Rating> ratings, Object sortKey) {
+
+    public void display() {
+        System.out.println("Title: " + title);
+        System.out.println("Length: " + length);
+        System.out.println("Audience: " + audience);
+
+        System.out.println("Authors:");
+
+        for (String authorName : authors) {
+            System.out.println("- " + authorName);
+        }
+
+        System.out.println("Publishers:");
+
+        for (String publisherName : publishers) {
+            System.out.println("- " + publisherName);
+        }
+
+        System.out.println("Ratings:");
+
+        for (Rating rating : ratings) {
+            System.out.println("- " + rating.username() + " (" + rating.rating() + ")");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.booksly.app;
+
+import java.util.Set;
+
+/**
+ * Finds which method of the app is running a query, so statements can be
+ * tagged with it, like User.displayTopRead.
+ */
+class Callers {
+    private static final String APP_PACKAGE = "com.booksly.app.";
+
+    // The JDBC plumbing between the caller and the driver
+    private static final Set<String> INFRASTRUCTURE = Set.of("Callers", "ConnectionPool", "StatementRegistry",
+            "Metrics", "SlowQueryLog");
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    /**
+     * Gets the innermost app method on the current thread's stack that isn't
+     * part of the connection pool or statement registry.
+     *
+     * @return The method, as Class.method, or "unknown" if there isn't one
+     */
+    static String current() {
+        return WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APP_PACKAGE))
+                .filter(frame -> !INFRASTRUCTURE.contains(outerClassName(frame.getClassName())))
+                .findFirst()
+                .map(frame -> simpleName(frame.getClassName()) + "." + methodName(frame.getMethodName()))
+                .orElse("unknown"));
+    }
+
+    private static String outerClassName(String className) {
+        String simpleName = className.substring(APP_PACKAGE.length());
+        int nested = simpleName.indexOf('$');
+
+        return nested < 0 ? simpleName : simpleName.substring(0, nested);
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(APP_PACKAGE.length()).replace('$', '.');
+    }
+
+    // Lambdas are compiled to methods like lambda$record$0, named after the
+    // method they're written in
+    private static String methodName(String methodName) {
+        if (methodName.startsWith("lambda$")) {
+            int end = methodName.indexOf('$', "lambda$".length());
+            return methodName.substring("lambda$".length(), end < 0 ? methodName.length() : end);
+        }
+
+        return methodName;
+    }
+}
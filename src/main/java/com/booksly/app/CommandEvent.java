@@ -0,0 +1,31 @@
+package com.booksly.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for one command, from when it was read to when it
+ * finished, including any prompts it waited on.
+ */
+@Name("booksly.Command")
+@Label("Command")
+@Category("Booksly")
+@Description("A command run by the app")
+class CommandEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("User Id")
+    @Description("The logged in user after the command ran, or 0 if nobody was")
+    int userId;
+
+    @Label("Roundtrips")
+    long roundtrips;
+
+    @Label("Rows")
+    @Description("Rows fetched from result sets")
+    long rows;
+}
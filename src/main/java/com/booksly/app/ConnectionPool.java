@@ -0,0 +1,457 @@
+package com.booksly.app;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of physical database connections. Connections handed out by
+ * {@link #getConnection()} go back to the pool when they are closed, so callers
+ * should always borrow them with try-with-resources. Closing one also closes
+ * every statement and result set opened through it.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+
+    // Connections used more recently than this are handed out without a
+    // validation roundtrip, which matters when every query crosses the tunnel
+    private static final long VALIDATION_INTERVAL_MILLIS = 5_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final long EVICTION_PERIOD_MILLIS = 30_000;
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+
+    // Most recently released connections are at the head, so the tail holds
+    // the ones that have been idle the longest
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private int total;
+    private boolean closed;
+
+    private final ScheduledExecutorService evictor;
+
+    // Metrics, all guarded by the lock
+    private int waiting;
+    private int maxWaiting;
+    private long borrows;
+    private long borrowNanos;
+    private long maxBorrowNanos;
+    private long created;
+    private long timeouts;
+    private long validationFailures;
+    private long evictions;
+
+    public ConnectionPool(String url, String username, String password, int maxSize) {
+        this(url, username, password, maxSize, 1, DEFAULT_BORROW_TIMEOUT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public ConnectionPool(String url, String username, String password, int maxSize, int minIdle,
+            long borrowTimeoutMillis, long idleTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, EVICTION_PERIOD_MILLIS, EVICTION_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none are idle
+     * and the pool isn't full yet. Otherwise waits for another caller to return
+     * one.
+     *
+     * @return A connection that goes back to the pool when closed
+     * @throws SQLException If no connection could be opened or the wait timed
+     *                      out
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + this.borrowTimeoutNanos;
+
+        while (true) {
+            PooledConnection pooled = null;
+
+            this.lock.lock();
+            try {
+                while (!this.closed && this.idle.isEmpty() && this.total >= this.maxSize) {
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) {
+                        this.timeouts++;
+                        throw new SQLTimeoutException("Timed out waiting for a database connection");
+                    }
+
+                    this.waiting++;
+                    this.maxWaiting = Math.max(this.maxWaiting, this.waiting);
+
+                    try {
+                        this.available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        this.waiting--;
+                    }
+                }
+
+                if (this.closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+
+                if (!this.idle.isEmpty()) {
+                    pooled = this.idle.pollFirst();
+                } else {
+                    // Reserve the slot now and open the connection outside the lock
+                    this.total++;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            if (pooled == null) {
+                pooled = open();
+            } else if (!isAlive(pooled)) {
+                this.lock.lock();
+                try {
+                    this.validationFailures++;
+                } finally {
+                    this.lock.unlock();
+                }
+
+                destroy(pooled);
+                continue;
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            this.lock.lock();
+            try {
+                this.borrows++;
+                this.borrowNanos += elapsed;
+                this.maxBorrowNanos = Math.max(this.maxBorrowNanos, elapsed);
+            } finally {
+                this.lock.unlock();
+            }
+
+            return pooled.lease(this);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            Connection connection = DriverManager.getConnection(this.url, this.username, this.password);
+
+            this.lock.lock();
+            try {
+                this.created++;
+            } finally {
+                this.lock.unlock();
+            }
+
+            return new PooledConnection(connection);
+        } catch (SQLException e) {
+            this.lock.lock();
+            try {
+                this.total--;
+                this.available.signal();
+            } finally {
+                this.lock.unlock();
+            }
+
+            throw e;
+        }
+    }
+
+    private static boolean isAlive(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_INTERVAL_MILLIS) {
+            return true;
+        }
+
+        try {
+            Roundtrips.increment();
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean reusable;
+
+        try {
+            reusable = !pooled.connection.isClosed();
+
+            // Don't let one caller's open transaction leak into the next
+            if (reusable && !pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        this.lock.lock();
+        try {
+            if (reusable && !this.closed) {
+                pooled.lastUsed = System.currentTimeMillis();
+                this.idle.offerFirst(pooled);
+                this.available.signal();
+                return;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        destroy(pooled);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        pooled.statements.closeAll();
+
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            // The connection is being thrown away anyway
+        }
+
+        this.lock.lock();
+        try {
+            this.total--;
+            this.available.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Closes connections that have sat idle for longer than the idle timeout,
+     * keeping at least the minimum number of idle connections open.
+     */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - this.idleTimeoutMillis;
+        Deque<PooledConnection> evicted = new ArrayDeque<>();
+
+        this.lock.lock();
+        try {
+            Iterator<PooledConnection> oldestFirst = this.idle.descendingIterator();
+
+            while (oldestFirst.hasNext() && this.idle.size() - evicted.size() > this.minIdle) {
+                PooledConnection pooled = oldestFirst.next();
+
+                if (pooled.lastUsed >= cutoff) {
+                    break;
+                }
+
+                oldestFirst.remove();
+                evicted.add(pooled);
+                this.evictions++;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        for (PooledConnection pooled : evicted) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the pool's size and borrow metrics.
+     *
+     * @return The current pool statistics
+     */
+    public Stats getStats() {
+        this.lock.lock();
+        try {
+            double averageBorrowMillis = this.borrows == 0 ? 0 : this.borrowNanos / 1e6 / this.borrows;
+
+            return new Stats(this.total, this.idle.size(), this.maxSize, this.waiting, this.maxWaiting,
+                    this.borrows, averageBorrowMillis, this.maxBorrowNanos / 1e6, this.created, this.timeouts,
+                    this.validationFailures, this.evictions);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        Deque<PooledConnection> toClose;
+
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+            toClose = new ArrayDeque<>(this.idle);
+            this.idle.clear();
+            this.available.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.evictor.shutdownNow();
+
+        // Borrowed connections are closed as they are released
+        for (PooledConnection pooled : toClose) {
+            destroy(pooled);
+        }
+    }
+
+    public record Stats(int total, int idle, int maxSize, int waiting, int maxWaiting, long borrows,
+            double averageBorrowMillis, double maxBorrowMillis, long created, long timeouts,
+            long validationFailures, long evictions) {
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "connections: %d open (%d idle, %d active) of %d%n" +
+                            "waiters: %d now, %d max%n" +
+                            "borrows: %d (avg %.3f ms, max %.3f ms), %d timed out%n" +
+                            "opened: %d, failed validation: %d, evicted idle: %d",
+                    total, idle, total - idle, maxSize, waiting, maxWaiting, borrows, averageBorrowMillis,
+                    maxBorrowMillis, timeouts, created, validationFailures, evictions);
+        }
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final StatementRegistry statements;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new StatementRegistry(connection);
+        }
+
+        private Connection lease(ConnectionPool pool) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Lease(pool, this));
+        }
+    }
+
+    /**
+     * Hands out a pooled connection to a single borrower. Closing it returns the
+     * physical connection to the pool, and any use after that fails instead of
+     * touching a connection someone else may now own.
+     */
+    private static class Lease implements InvocationHandler {
+        private final ConnectionPool pool;
+        private final PooledConnection pooled;
+        private final List<Statement> unregistered = new ArrayList<>();
+        private boolean returned;
+
+        private Lease(ConnectionPool pool, PooledConnection pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!this.returned) {
+                        this.returned = true;
+                        closeStatements();
+                        this.pool.release(this.pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return this.returned || this.pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + this.pooled.connection;
+                default:
+                    break;
+            }
+
+            if (this.returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return this.pooled.statements.prepare((String) args[0], (Connection) proxy);
+            }
+
+            if (method.getName().equals("commit") || method.getName().equals("rollback")) {
+                Roundtrips.increment();
+            }
+
+            Object result;
+
+            try {
+                result = method.invoke(this.pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            // Statements the registry doesn't cache are still closed on return
+            if (result instanceof Statement statement) {
+                this.unregistered.add(statement);
+            }
+
+            return result;
+        }
+
+        private void closeStatements() {
+            for (Statement statement : this.unregistered) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // The connection itself is still usable
+                }
+            }
+
+            this.unregistered.clear();
+            this.pooled.statements.releaseAll();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.booksly.app;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Loads rows into one table with COPY FROM STDIN, which skips per-row
+ * statement overhead entirely. Values are formatted straight into a reusable
+ * byte buffer in COPY's text format, so writing a row allocates nothing, and
+ * the buffer is handed to the driver whenever it fills.
+ *
+ * Each chunk of rows is its own COPY and transaction, committed together with
+ * the load's checkpoint, so a failure only loses the chunk in progress.
+ */
+class CopyInserter implements RowWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    private final Connection connection;
+    private final CopyManager copyManager;
+    private final String sql;
+    private final int chunkSize;
+    private final LoadCheckpoint checkpoint;
+    private final TimeZone zone = TimeZone.getDefault();
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int length;
+
+    private CopyIn copy;
+    private boolean rowStarted;
+    private int chunkRows;
+    private long rows;
+
+    /**
+     * Starts a load. Turns autocommit off on the connection until the
+     * inserter is closed.
+     *
+     * @param connection The connection to load through
+     * @param tableName  The table to load
+     * @param columns    The columns each row has values for
+     * @param chunkSize  The number of rows to copy and commit at a time
+     * @param checkpoint The checkpoint to save with each chunk
+     * @throws SQLException If the connection isn't a Postgres one
+     */
+    CopyInserter(Connection connection, String tableName, List<String> columns, int chunkSize,
+            LoadCheckpoint checkpoint) throws SQLException {
+        this.connection = connection;
+        this.copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        this.sql = "copy " + tableName + "(" + String.join(", ", columns) + ") from stdin";
+        this.chunkSize = chunkSize;
+        this.checkpoint = checkpoint;
+
+        connection.setAutoCommit(false);
+    }
+
+    @Override
+    public void writeInt(int value) throws SQLException {
+        startColumn();
+        putLong(value);
+    }
+
+    @Override
+    public void writeText(CharSequence value) throws SQLException {
+        startColumn();
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\') {
+                put('\\');
+                put('\\');
+            } else if (c == '\t') {
+                put('\\');
+                put('t');
+            } else if (c == '\n') {
+                put('\\');
+                put('n');
+            } else if (c == '\r') {
+                put('\\');
+                put('r');
+            } else if (c < 0x80) {
+                put(c);
+            } else if (c < 0x800) {
+                put(0xc0 | (c >> 6));
+                put(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                put(0xf0 | (codePoint >> 18));
+                put(0x80 | ((codePoint >> 12) & 0x3f));
+                put(0x80 | ((codePoint >> 6) & 0x3f));
+                put(0x80 | (codePoint & 0x3f));
+            } else {
+                put(0xe0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3f));
+                put(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    @Override
+    public void writeDate(long epochMillis) throws SQLException {
+        startColumn();
+        putDate(Math.floorDiv(toLocalMillis(epochMillis), MILLIS_PER_DAY));
+    }
+
+    @Override
+    public void writeTimestamp(long epochMillis) throws SQLException {
+        startColumn();
+
+        long localMillis = toLocalMillis(epochMillis);
+        long millisOfDay = Math.floorMod(localMillis, MILLIS_PER_DAY);
+
+        putDate(Math.floorDiv(localMillis, MILLIS_PER_DAY));
+        put(' ');
+        putPadded(millisOfDay / 3_600_000, 2);
+        put(':');
+        putPadded(millisOfDay / 60_000 % 60, 2);
+        put(':');
+        putPadded(millisOfDay / 1000 % 60, 2);
+        put('.');
+        putPadded(millisOfDay % 1000, 3);
+    }
+
+    @Override
+    public void endRow() throws SQLException {
+        put('\n');
+
+        this.rowStarted = false;
+        this.rows++;
+        this.chunkRows++;
+
+        if (this.chunkRows == this.chunkSize) {
+            finishChunk();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return this.rows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (this.copy != null) {
+                finishChunk();
+            }
+        } finally {
+            this.connection.setAutoCommit(true);
+        }
+    }
+
+    private void startColumn() throws SQLException {
+        if (this.copy == null) {
+            this.copy = this.copyManager.copyIn(this.sql);
+        }
+
+        if (this.rowStarted) {
+            put('\t');
+        }
+
+        this.rowStarted = true;
+    }
+
+    private void finishChunk() throws SQLException {
+        try {
+            flushBuffer();
+            this.copy.endCopy();
+            this.checkpoint.save(this.connection, this.rows);
+            this.connection.commit();
+        } catch (SQLException e) {
+            if (this.copy.isActive()) {
+                this.copy.cancelCopy();
+            }
+
+            this.connection.rollback();
+            throw e;
+        } finally {
+            this.copy = null;
+            this.length = 0;
+            this.chunkRows = 0;
+        }
+    }
+
+    private void flushBuffer() throws SQLException {
+        if (this.length > 0) {
+            this.copy.writeToCopy(this.buffer, 0, this.length);
+            this.length = 0;
+        }
+    }
+
+    private long toLocalMillis(long epochMillis) {
+        return epochMillis + this.zone.getOffset(epochMillis);
+    }
+
+    private void put(int b) throws SQLException {
+        if (this.length == this.buffer.length) {
+            flushBuffer();
+        }
+
+        this.buffer[this.length++] = (byte) b;
+    }
+
+    private void putLong(long value) throws SQLException {
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+
+        long divisor = 1;
+
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+
+        for (; divisor > 0; divisor /= 10) {
+            put((int) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void putPadded(long value, int digits) throws SQLException {
+        long divisor = 1;
+
+        for (int i = 1; i < digits; i++) {
+            divisor *= 10;
+        }
+
+        for (; divisor > 0; divisor /= 10) {
+            put((int) ('0' + value / divisor % 10));
+        }
+    }
+
+    // Converts days since the epoch to a year, month and day, from Howard
+    // Hinnant's civil_from_days
+    private void putDate(long epochDay) throws SQLException {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        putPadded(year, 4);
+        put('-');
+        putPadded(month, 2);
+        put('-');
+        putPadded(day, 2);
+    }
+}
@@ -0,0 +1,110 @@
+package com.booksly.app;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with fixed log-linear buckets: each
+ * power of two is split into 32 buckets, so any percentile read back is
+ * within about 3% of the true value, whatever the range, in a few kilobytes.
+ * Recording is lock-free, so any number of threads can share one.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below this get a bucket each
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos The latency, in nanoseconds
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+
+        this.counts.incrementAndGet(bucketOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    long getCount() {
+        return this.count.sum();
+    }
+
+    long getTotalNanos() {
+        return this.sum.sum();
+    }
+
+    double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+
+    long getMaxNanos() {
+        return this.max.get();
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The latency at that percentile, in nanoseconds, or 0 if nothing
+     *         has been recorded
+     */
+    long getPercentileNanos(double percentile) {
+        long total = getCount();
+
+        if (total == 0) {
+            return 0;
+        }
+
+        // The nearest rank, so the 100th percentile is the largest value
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += this.counts.get(bucket);
+
+            if (seen >= rank) {
+                return Math.min(midpointOf(bucket), getMaxNanos());
+            }
+        }
+
+        return getMaxNanos();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long midpointOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        long lowest = subBucket << shift;
+
+        return lowest + (1L << shift) / 2;
+    }
+}
@@ -0,0 +1,113 @@
+package com.booksly.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * How far one sample data load task has got, as recorded in the
+ * load_checkpoint table. Row writers save the checkpoint in the same
+ * transaction as each chunk they commit, so the count never disagrees with
+ * what's actually in the table. Since the generator is deterministic, a rerun
+ * regenerates the task's rows and skips the ones already loaded.
+ */
+class LoadCheckpoint {
+    private final String task;
+    private final long seed;
+    private final int scale;
+    private final long rowsLoaded;
+    private final boolean completed;
+
+    private LoadCheckpoint(String task, long seed, int scale, long rowsLoaded, boolean completed) {
+        this.task = task;
+        this.seed = seed;
+        this.scale = scale;
+        this.rowsLoaded = rowsLoaded;
+        this.completed = completed;
+    }
+
+    /**
+     * Reads a task's checkpoint, or starts a new one if the task has never
+     * run.
+     *
+     * @param connection The connection to read through
+     * @param task       The task's name
+     * @param seed       The seed the load is generating with
+     * @param scale      The scale the load is generating at
+     * @return The checkpoint
+     * @throws SQLException If the checkpoint was written by a load with a
+     *                      different seed or scale, or there was an error with
+     *                      the query
+     */
+    static LoadCheckpoint open(Connection connection, String task, long seed, int scale) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(
+                "select seed, scale, rows_loaded, completed from load_checkpoint where task = ?");
+        ps.setString(1, task);
+
+        ResultSet result = ps.executeQuery();
+
+        if (!result.next()) {
+            return new LoadCheckpoint(task, seed, scale, 0, false);
+        }
+
+        if (result.getLong("seed") != seed || result.getInt("scale") != scale) {
+            throw new SQLException(String.format(
+                    "%s was loaded with seed %d at scale %d; empty its table and load_checkpoint to start over",
+                    task, result.getLong("seed"), result.getInt("scale")));
+        }
+
+        return new LoadCheckpoint(task, seed, scale, result.getLong("rows_loaded"), result.getBoolean("completed"));
+    }
+
+    long getRowsLoaded() {
+        return this.rowsLoaded;
+    }
+
+    boolean isCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * Records that more of the task's rows are loaded. Doesn't commit, so it
+     * should run in the transaction that loaded them.
+     *
+     * @param connection The connection the rows were loaded on
+     * @param rowsLoaded How many rows have been loaded since this checkpoint
+     *                   was opened, counting the ones being committed
+     * @throws SQLException If there was an error with the query
+     */
+    void save(Connection connection, long rowsLoaded) throws SQLException {
+        write(connection, this.rowsLoaded + rowsLoaded, false);
+    }
+
+    /**
+     * Marks the task done, so reruns skip it without generating anything.
+     *
+     * @param connection The connection to write through
+     * @param rowsLoaded How many rows the task loaded in all
+     * @throws SQLException If there was an error with the query
+     */
+    void complete(Connection connection, long rowsLoaded) throws SQLException {
+        write(connection, rowsLoaded, true);
+    }
+
+    private void write(Connection connection, long rowsLoaded, boolean completed) throws SQLException {
+        // Runs once per chunk on a long-lived connection, so it's closed here
+        // rather than left for the connection to close
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into load_checkpoint (task, seed, scale, rows_loaded, completed)\r\n" + //
+                        "values (?, ?, ?, ?, ?)\r\n" + //
+                        "on conflict (task) do update\r\n" + //
+                        "set rows_loaded = excluded.rows_loaded, completed = excluded.completed,\r\n" + //
+                        "    updated_at = now()")) {
+            ps.setString(1, this.task);
+            ps.setLong(2, this.seed);
+            ps.setInt(3, this.scale);
+            ps.setLong(4, rowsLoaded);
+            ps.setBoolean(5, completed);
+
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.booksly.app;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many simulated users against a database loaded with the sample
+ * dataset, to see how the schema and queries hold up under concurrency. Each
+ * simulated user is logged in as a different sample user and issues a
+ * weighted mix of operations back to back, with no think time, for a fixed
+ * time. The run is repeated at each concurrency level given, and each level
+ * reports its throughput, each operation's latency percentiles and how many
+ * operations failed with lock, deadlock or serialization errors.
+ *
+ * Simulated users don't hold a connection or session of their own. They run
+ * the operations through User, Book and BookSearch as the app does, so they
+ * borrow a connection from one shared pool for each query and share User's
+ * cache of user rows. That keeps the queries the same ones the app runs. The
+ * pool is sized to the highest level, so nobody waits for a connection. The
+ * cache is synchronized and only holds rows the app would cache anyway, so
+ * the only extra contention is on its lock.
+ *
+ * Usage: LoadGenerator --url URL [--user USER] [--password PASSWORD]
+ * [--users 1,4,16,64] [--duration SECONDS] [--warmup SECONDS] [--scale N]
+ * [--seed N]
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_LEVELS = "1,4,16,64";
+    private static final int DEFAULT_DURATION_SECONDS = 30;
+    private static final int DEFAULT_WARMUP_SECONDS = 5;
+
+    private enum Operation {
+        RATE(20),
+        READ(20),
+        FOLLOW(10),
+        SEARCH(20),
+        PROFILE(20),
+        RECOMMEND(10);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int TOTAL_WEIGHT = 100;
+    private static final String[] PROFILE_SORTS = { "ratings", "read", "both" };
+
+    private final int users;
+    private final int books;
+    private final List<String> firstNames;
+    private final List<String> lastNames;
+    private final List<String> nouns;
+
+    private LoadGenerator(int scale) {
+        this.users = SampleDataLoader.USERS_PER_SCALE * scale;
+        this.books = SampleDataLoader.BOOKS_PER_SCALE * scale;
+
+        try {
+            this.firstNames = SampleDataLoader.readLines("./data/first_names.txt");
+            this.lastNames = SampleDataLoader.readLines("./data/last_names.txt");
+            this.nouns = SampleDataLoader.readLines("./data/book_nouns.txt");
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException("Run from the project directory so ./data can be found", e);
+        }
+    }
+
+    /**
+     * The results of one run at one concurrency level. Only operations that
+     * start after the warmup are counted.
+     */
+    private static class Results {
+        private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        Results() {
+            for (Operation operation : Operation.values()) {
+                this.latencies.put(operation, new LatencyHistogram());
+            }
+        }
+
+        long getOperationCount() {
+            return this.latencies.values().stream().mapToLong(LatencyHistogram::getCount).sum();
+        }
+
+        long getErrorCount() {
+            return this.errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+    }
+
+    /**
+     * Runs one concurrency level.
+     *
+     * @param concurrency   How many simulated users to run at once
+     * @param warmupNanos   How long to run before counting operations
+     * @param durationNanos How long to count operations for
+     * @param seed          The seed each simulated user's choices derive from
+     * @return The results
+     */
+    private Results run(int concurrency, long warmupNanos, long durationNanos, long seed) {
+        Results results = new Results();
+        long measureFrom = System.nanoTime() + warmupNanos;
+        long stopAt = measureFrom + durationNanos;
+
+        // Spread the simulated users over the sample users so they don't
+        // write the same rows
+        int stride = Math.max(1, this.users / concurrency);
+        List<Future<?>> running = new ArrayList<>();
+
+        ExecutorService workers = newUserExecutor();
+
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                int userId = i * stride % this.users + 1;
+                Random rng = new Random(seed * 31 + i);
+
+                running.add(workers.submit(() -> simulate(userId, rng, measureFrom, stopAt, results)));
+            }
+
+            for (Future<?> future : running) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return results;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A simulated user failed", e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return results;
+    }
+
+    private void simulate(int userId, Random rng, long measureFrom, long stopAt, Results results) {
+        User user = new User(userId);
+
+        while (true) {
+            long startTime = System.nanoTime();
+
+            if (startTime >= stopAt) {
+                return;
+            }
+
+            Operation operation = pick(rng);
+
+            try {
+                perform(operation, user, rng);
+
+                if (startTime >= measureFrom) {
+                    results.latencies.get(operation).record(System.nanoTime() - startTime);
+                }
+            } catch (SQLException e) {
+                if (startTime >= measureFrom) {
+                    results.errors.computeIfAbsent(operation.name().toLowerCase() + " " + errorClass(e),
+                            key -> new LongAdder()).increment();
+                }
+            }
+        }
+    }
+
+    private static Operation pick(Random rng) {
+        int roll = rng.nextInt(TOTAL_WEIGHT);
+
+        for (Operation operation : Operation.values()) {
+            roll -= operation.weight;
+
+            if (roll < 0) {
+                return operation;
+            }
+        }
+
+        throw new IllegalStateException("Operation weights don't add up to " + TOTAL_WEIGHT);
+    }
+
+    // Each operation makes the same calls as the command it stands for, minus
+    // the existence checks, since the ids are known to exist
+    private void perform(Operation operation, User user, Random rng) throws SQLException {
+        switch (operation) {
+            case RATE: {
+                int bookId = rng.nextInt(this.books) + 1;
+                int rating = rng.nextInt(5) + 1;
+
+                if (user.hasRatedBook(bookId)) {
+                    user.updateBookRating(bookId, rating);
+                } else {
+                    user.rateBook(bookId, rating);
+                }
+                break;
+            }
+            case READ: {
+                int startPage = rng.nextInt(100) + 1;
+                long startMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(rng.nextInt(365));
+
+                user.readBook(rng.nextInt(this.books) + 1, startPage, startPage + rng.nextInt(30),
+                        new Timestamp(startMillis),
+                        new Timestamp(startMillis + TimeUnit.MINUTES.toMillis(rng.nextInt(120) + 1)));
+                break;
+            }
+            case FOLLOW: {
+                String username = randomUsername(rng);
+
+                if (user.isFollowing(username)) {
+                    user.unfollowUser(username);
+                } else {
+                    user.followUser(username);
+                }
+                break;
+            }
+            case SEARCH: {
+                BookFilter filter = new BookFilter().keywords(this.nouns.get(rng.nextInt(this.nouns.size())));
+
+                new BookSearch(filter, "relevance", "desc").displayFirstPage();
+                break;
+            }
+            case PROFILE: {
+                User profile = new User(User.getUserId(randomUsername(rng)));
+                String sort = PROFILE_SORTS[rng.nextInt(PROFILE_SORTS.length)];
+
+                profile.getCollectionCount();
+                profile.getFollowerCount();
+                profile.getFollowingCount();
+
+                if (sort.equals("ratings")) {
+                    profile.displayTopRatings();
+                } else if (sort.equals("read")) {
+                    profile.displayTopRead();
+                } else {
+                    profile.displayTopRatingsAndRead();
+                }
+                break;
+            }
+            case RECOMMEND:
+                user.recommendBooks();
+                break;
+        }
+    }
+
+    private String randomUsername(Random rng) {
+        return SampleDataLoader.sampleUsername(this.firstNames, this.lastNames, rng.nextInt(this.users) + 1);
+    }
+
+    /**
+     * Sorts a failure into the kind of contention that caused it, by its
+     * SQLSTATE.
+     *
+     * @param e The failure
+     * @return serialization, deadlock, lock timeout, statement timeout, pool
+     *         timeout, or the SQLSTATE for anything else
+     */
+    static String errorClass(SQLException e) {
+        String state = e.getSQLState();
+
+        if (state == null) {
+            return e instanceof SQLTimeoutException ? "pool timeout" : "other";
+        }
+
+        switch (state) {
+            case "40001":
+                return "serialization";
+            case "40P01":
+                return "deadlock";
+            case "55P03":
+                return "lock timeout";
+            case "57014":
+                return "statement timeout";
+            default:
+                return state;
+        }
+    }
+
+    // Virtual threads are only in Java 21 and up, but the app still builds
+    // for 17, so they're looked up when available and platform threads are
+    // used otherwise
+    private static ExecutorService newUserExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "simulated-user");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static void report(int concurrency, Results results, long durationNanos, PrintStream out) {
+        double seconds = durationNanos / 1e9;
+        long operations = results.getOperationCount();
+
+        out.printf("%d users: %d operations in %.0fs (%.1f ops/s), %d errors%n", concurrency, operations, seconds,
+                operations / seconds, results.getErrorCount());
+        out.printf("  %-10s %8s %9s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms");
+
+        for (Map.Entry<Operation, LatencyHistogram> entry : results.latencies.entrySet()) {
+            LatencyHistogram latencies = entry.getValue();
+
+            out.printf("  %-10s %8d %9.1f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey().name().toLowerCase(),
+                    latencies.getCount(), latencies.getCount() / seconds, latencies.getPercentileNanos(50) / 1e6,
+                    latencies.getPercentileNanos(99) / 1e6, latencies.getPercentileNanos(99.9) / 1e6,
+                    latencies.getMaxNanos() / 1e6);
+        }
+
+        results.errors.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> out.printf("  errors: %s %d%n", entry.getKey(), entry.getValue().sum()));
+
+        out.println();
+    }
+
+    public static void main(String[] args) throws SQLException {
+        String url = null;
+        String user = System.getProperty("user.name");
+        String password = "";
+        String levels = DEFAULT_LEVELS;
+        int durationSeconds = DEFAULT_DURATION_SECONDS;
+        int warmupSeconds = DEFAULT_WARMUP_SECONDS;
+        int scale = 1;
+        long seed = 42;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url":
+                    url = args[++i];
+                    break;
+                case "--user":
+                    user = args[++i];
+                    break;
+                case "--password":
+                    password = args[++i];
+                    break;
+                case "--users":
+                    levels = args[++i];
+                    break;
+                case "--duration":
+                    durationSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--scale":
+                    scale = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        if (url == null) {
+            System.err.println("Usage: LoadGenerator --url URL [--user USER] [--password PASSWORD]"
+                    + " [--users 1,4,16,64] [--duration SECONDS] [--warmup SECONDS] [--scale N] [--seed N]");
+            return;
+        }
+
+        int[] concurrencies = Arrays.stream(levels.split(",")).mapToInt(Integer::parseInt).toArray();
+        int maxConcurrency = Arrays.stream(concurrencies).max().orElse(1);
+
+        // One connection per simulated user, so nobody waits on the pool and
+        // any waiting measured is in the database
+        ConnectionPool pool = new ConnectionPool(url, user, password, maxConcurrency);
+        LoadGenerator generator = new LoadGenerator(scale);
+
+        Schema.apply(pool);
+        User.setConnectionPool(pool);
+        Book.setConnectionPool(pool);
+        BookSearch.setConnectionPool(pool);
+
+        // The operations print what the commands would, which isn't wanted here
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            for (int concurrency : concurrencies) {
+                long durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+                Results results = generator.run(concurrency, TimeUnit.SECONDS.toNanos(warmupSeconds),
+                        durationNanos, seed);
+
+                report(concurrency, results, durationNanos, console);
+            }
+
+            console.println(pool.getStats());
+        } finally {
+            System.setOut(console);
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.booksly.app;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a load made of stages, where each stage loads a table in one or more
+ * tasks and can depend on earlier stages. A stage starts as soon as every
+ * stage it depends on has finished, and its tasks share a fixed set of worker
+ * threads with every other running stage, so tables that don't depend on each
+ * other load at the same time, each task on its own connection.
+ *
+ * Each stage prints its row count and time when it finishes, timed from when
+ * it became ready to run. Once any task fails no new tasks start, and the
+ * first failure is rethrown after the running ones finish.
+ */
+class LoadOrchestrator {
+    @FunctionalInterface
+    interface LoadTask {
+        /**
+         * Runs the task.
+         *
+         * @return The number of rows loaded
+         * @throws SQLException If there was an error loading
+         */
+        long run() throws SQLException;
+    }
+
+    private record Stage(String name, List<String> dependencies, List<LoadTask> tasks) {
+    }
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * Adds a stage. Stages can only depend on ones added before them, so the
+     * stages always form a DAG.
+     *
+     * @param name         The stage's name, usually the table it loads
+     * @param dependencies The stages that have to finish first
+     * @param tasks        The tasks the stage's rows are split into, which may
+     *                     run at the same time
+     * @throws IllegalArgumentException If a dependency hasn't been added
+     */
+    void addStage(String name, List<String> dependencies, List<LoadTask> tasks) {
+        for (String dependency : dependencies) {
+            if (!this.stages.containsKey(dependency)) {
+                throw new IllegalArgumentException("Stage " + name + " depends on unknown stage " + dependency);
+            }
+        }
+
+        this.stages.put(name, new Stage(name, dependencies, tasks));
+    }
+
+    /**
+     * Runs every stage and waits for them all to finish.
+     *
+     * @param threads The number of tasks to run at once, which should be no
+     *                more than the connection pool's size
+     * @throws SQLException If a task failed
+     */
+    void run(int threads) throws SQLException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Map<String, CompletableFuture<Long>> finished = new HashMap<>();
+        long startTime = System.nanoTime();
+
+        try {
+            for (Stage stage : this.stages.values()) {
+                CompletableFuture<?>[] dependencies = stage.dependencies().stream()
+                        .map(finished::get)
+                        .toArray(CompletableFuture[]::new);
+
+                finished.put(stage.name(), CompletableFuture.allOf(dependencies)
+                        .thenCompose(ignored -> runStage(stage, workers)));
+            }
+
+            CompletableFuture.allOf(finished.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (this.failure.get() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+
+            if (this.failure.get() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+
+            throw e;
+        } finally {
+            workers.shutdown();
+        }
+
+        report("total", finished.values().stream().mapToLong(CompletableFuture::join).sum(), startTime);
+    }
+
+    private CompletableFuture<Long> runStage(Stage stage, ExecutorService workers) {
+        long startTime = System.nanoTime();
+        LongAdder rows = new LongAdder();
+
+        CompletableFuture<?>[] tasks = stage.tasks().stream()
+                .map(task -> CompletableFuture.runAsync(() -> runTask(task, rows), workers))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(tasks).thenApply(ignored -> {
+            report(stage.name(), rows.sum(), startTime);
+            return rows.sum();
+        });
+    }
+
+    private void runTask(LoadTask task, LongAdder rows) {
+        if (this.failure.get() != null) {
+            throw new CompletionException(this.failure.get());
+        }
+
+        try {
+            rows.add(task.run());
+        } catch (SQLException | RuntimeException e) {
+            this.failure.compareAndSet(null, e);
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void report(String stageName, long rows, long startTime) {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.printf("%s: %d rows in %.2fs (%.0f rows/s)%n", stageName, rows, seconds,
+                seconds == 0 ? 0 : rows / seconds);
+    }
+}
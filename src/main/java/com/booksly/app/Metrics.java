@@ -0,0 +1,152 @@
+package com.booksly.app;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms for every command and every SQL statement the app runs,
+ * with the roundtrips each command made and the rows each fetched. Statements
+ * are timed by the statement registry as they execute and their rows counted
+ * as their result sets are read, and commands are timed by the app, so
+ * recording costs a couple of clock reads and atomic adds.
+ */
+class Metrics {
+    // Statements are listed by the time spent in them, up to this many
+    private static final int TOP_STATEMENTS = 20;
+    private static final int CALLER_WIDTH = 32;
+    private static final int SQL_WIDTH = 60;
+
+    private static final Map<String, Timer> COMMANDS = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> STATEMENTS = new ConcurrentHashMap<>();
+
+    // Rows fetched by each thread, so commands can count their own
+    private static final ThreadLocal<long[]> THREAD_ROWS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static class Timer {
+        private final String caller;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder roundtrips = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        Timer(String caller) {
+            this.caller = caller;
+        }
+    }
+
+    /**
+     * Records one run of a command.
+     *
+     * @param command    The command's name
+     * @param nanos      How long it took
+     * @param roundtrips How many database roundtrips it made
+     * @param rows       How many rows it fetched
+     */
+    static void recordCommand(String command, long nanos, long roundtrips, long rows) {
+        Timer timer = COMMANDS.computeIfAbsent(command, key -> new Timer(null));
+
+        timer.latencies.record(nanos);
+        timer.roundtrips.add(roundtrips);
+        timer.rows.add(rows);
+    }
+
+    /**
+     * Records one execution of a statement. The first time a statement is
+     * seen it's tagged with the app method running it.
+     *
+     * @param sql   The statement's SQL text
+     * @param nanos How long the execute call took
+     */
+    static void recordStatement(String sql, long nanos) {
+        STATEMENTS.computeIfAbsent(sql, key -> new Timer(Callers.current())).latencies.record(nanos);
+    }
+
+    /**
+     * Records the rows read from one of a statement's result sets.
+     *
+     * @param sql  The statement's SQL text
+     * @param rows How many rows were read
+     */
+    static void recordRows(String sql, long rows) {
+        STATEMENTS.computeIfAbsent(sql, key -> new Timer(Callers.current())).rows.add(rows);
+        THREAD_ROWS.get()[0] += rows;
+    }
+
+    /**
+     * Gets the number of rows the current thread has fetched.
+     *
+     * @return The count, since the thread started
+     */
+    static long getThreadRows() {
+        return THREAD_ROWS.get()[0];
+    }
+
+    static void reset() {
+        COMMANDS.clear();
+        STATEMENTS.clear();
+    }
+
+    static boolean isEmpty() {
+        return COMMANDS.isEmpty() && STATEMENTS.isEmpty();
+    }
+
+    /**
+     * Formats every command's metrics, and the metrics of the statements that
+     * took the most time in all, as tables. Roundtrips and rows are averages
+     * per run.
+     *
+     * @return The report
+     */
+    static String report() {
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("%-24s %7s %9s %9s %9s %9s %10s %9s%n", "command", "count", "p50 ms",
+                "p99 ms", "p99.9 ms", "max ms", "roundtrips", "rows"));
+
+        COMMANDS.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    Timer timer = entry.getValue();
+
+                    report.append(String.format("%-24s %s %10.1f %9.1f%n", entry.getKey(),
+                            formatLatencies(timer.latencies), perRun(timer.roundtrips, timer),
+                            perRun(timer.rows, timer)));
+                });
+
+        report.append(String.format("%n%-" + CALLER_WIDTH + "s %-" + SQL_WIDTH + "s %7s %9s %9s %9s %9s %10s %9s%n",
+                "caller", "statement", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "total ms", "rows"));
+
+        STATEMENTS.entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, Timer> entry) -> entry.getValue().latencies.getTotalNanos()).reversed())
+                .limit(TOP_STATEMENTS)
+                .forEach(entry -> {
+                    Timer timer = entry.getValue();
+
+                    report.append(String.format("%-" + CALLER_WIDTH + "s %-" + SQL_WIDTH + "s %s %10.1f %9.1f%n",
+                            abbreviate(timer.caller, CALLER_WIDTH), abbreviate(entry.getKey(), SQL_WIDTH),
+                            formatLatencies(timer.latencies), timer.latencies.getTotalNanos() / 1e6,
+                            perRun(timer.rows, timer)));
+                });
+
+        return report.toString();
+    }
+
+    private static String formatLatencies(LatencyHistogram latencies) {
+        return String.format("%7d %9.3f %9.3f %9.3f %9.3f", latencies.getCount(),
+                latencies.getPercentileNanos(50) / 1e6, latencies.getPercentileNanos(99) / 1e6,
+                latencies.getPercentileNanos(99.9) / 1e6, latencies.getMaxNanos() / 1e6);
+    }
+
+    private static double perRun(LongAdder total, Timer timer) {
+        long count = timer.latencies.getCount();
+        return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    private static String abbreviate(String text, int width) {
+        String flattened = text.replaceAll("\\s+", " ").strip();
+
+        return flattened.length() <= width ? flattened : flattened.substring(0, width - 3) + "...";
+    }
+}
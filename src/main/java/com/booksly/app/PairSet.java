@@ -0,0 +1,123 @@
+package com.booksly.app;
+
+/**
+ * A set of (int, int) pairs, each packed into one long and stored in an
+ * open-addressing table with linear probing. Used by the data generator to
+ * drop repeated pairs before they reach a table with a composite key, without
+ * boxing a Long per pair like a HashSet would.
+ */
+class PairSet {
+    private static final float MAX_LOAD = 0.5f;
+
+    // 0 marks an empty slot, so the pair that packs to 0 is tracked apart
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+
+    /**
+     * Creates a set sized to hold the expected number of pairs without
+     * growing.
+     *
+     * @param expectedSize The number of pairs expected
+     */
+    PairSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        this.slots = new long[capacity];
+    }
+
+    static long pack(int first, int second) {
+        return ((long) first << 32) | (second & 0xffffffffL);
+    }
+
+    /**
+     * Adds a pair if it isn't already in the set.
+     *
+     * @param first  The first value of the pair
+     * @param second The second value of the pair
+     * @return True if the pair was added, false if it was already there
+     */
+    boolean add(int first, int second) {
+        long key = pack(first, second);
+
+        if (key == 0) {
+            boolean added = !this.containsZero;
+            this.containsZero = true;
+            this.size += added ? 1 : 0;
+            return added;
+        }
+
+        int mask = this.slots.length - 1;
+        int index = hash(key) & mask;
+
+        while (this.slots[index] != 0) {
+            if (this.slots[index] == key) {
+                return false;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.slots[index] = key;
+        this.size++;
+
+        if (this.size > this.slots.length * MAX_LOAD) {
+            grow();
+        }
+
+        return true;
+    }
+
+    boolean contains(int first, int second) {
+        long key = pack(first, second);
+
+        if (key == 0) {
+            return this.containsZero;
+        }
+
+        int mask = this.slots.length - 1;
+        int index = hash(key) & mask;
+
+        while (this.slots[index] != 0) {
+            if (this.slots[index] == key) {
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void grow() {
+        long[] old = this.slots;
+        this.slots = new long[old.length * 2];
+
+        int mask = this.slots.length - 1;
+
+        for (long key : old) {
+            if (key != 0) {
+                int index = hash(key) & mask;
+
+                while (this.slots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+
+                this.slots[index] = key;
+            }
+        }
+    }
+
+    // The finalizer from MurmurHash3, so nearby ids spread across the table
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,158 @@
+package com.booksly.app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Hashes salted passwords. The salt and password are interleaved a character
+ * at a time, with the salt starting five characters in, and the UTF-8 bytes
+ * of that are hashed with SHA-256 and written out as lowercase hex.
+ *
+ * Each thread keeps its own digest and buffers, so hashing a password
+ * allocates nothing but the returned string, and {@link #hashAll} can hash a
+ * batch on every core at once.
+ */
+class PasswordHasher {
+    private static final int HASH_LENGTH = 32;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private static class Buffers {
+        private final MessageDigest digest;
+        private final byte[] hash = new byte[HASH_LENGTH];
+        private final char[] hex = new char[HASH_LENGTH * 2];
+        private byte[] input = new byte[256];
+
+        Buffers() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to have it
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Hashes a password with a salt.
+     *
+     * @param password The password
+     * @param salt     The salt, which can't be empty
+     * @return The hash, as 64 hex digits
+     */
+    static String hash(String password, String salt) {
+        if (hasSurrogates(password) || hasSurrogates(salt)) {
+            return hashSlowly(password, salt);
+        }
+
+        Buffers buffers = BUFFERS.get();
+
+        // Each char takes at most three bytes of UTF-8
+        int maxLength = password.length() * 2 * 3;
+
+        if (buffers.input.length < maxLength) {
+            buffers.input = new byte[maxLength];
+        }
+
+        byte[] input = buffers.input;
+        int length = 0;
+
+        for (int i = 0; i < password.length(); i++) {
+            length = putUtf8(input, length, salt.charAt((i + 5) % salt.length()));
+            length = putUtf8(input, length, password.charAt(i));
+        }
+
+        buffers.digest.update(input, 0, length);
+
+        try {
+            buffers.digest.digest(buffers.hash, 0, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+
+        toHex(buffers.hash, buffers.hex);
+
+        return new String(buffers.hex);
+    }
+
+    /**
+     * Hashes a batch of passwords across every core.
+     *
+     * @param passwords The passwords
+     * @param salts     Each password's salt, in the same order
+     * @return Each password's hash, in the same order
+     */
+    static String[] hashAll(List<String> passwords, List<String> salts) {
+        if (passwords.size() != salts.size()) {
+            throw new IllegalArgumentException("Every password needs a salt");
+        }
+
+        String[] hashes = new String[passwords.size()];
+
+        IntStream.range(0, hashes.length).parallel()
+                .forEach(i -> hashes[i] = hash(passwords.get(i), salts.get(i)));
+
+        return hashes;
+    }
+
+    /**
+     * Writes bytes as lowercase hex.
+     *
+     * @param bytes The bytes
+     * @param hex   Where to write the digits, two per byte
+     */
+    static void toHex(byte[] bytes, char[] hex) {
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+    }
+
+    private static int putUtf8(byte[] bytes, int offset, char c) {
+        if (c < 0x80) {
+            bytes[offset++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[offset++] = (byte) (0xc0 | (c >> 6));
+            bytes[offset++] = (byte) (0x80 | (c & 0x3f));
+        } else {
+            bytes[offset++] = (byte) (0xe0 | (c >> 12));
+            bytes[offset++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            bytes[offset++] = (byte) (0x80 | (c & 0x3f));
+        }
+
+        return offset;
+    }
+
+    private static boolean hasSurrogates(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isSurrogate(s.charAt(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Interleaving can pair up or split surrogates, which String's encoder
+    // handles in its own way, so those rare passwords are encoded by it
+    private static String hashSlowly(String password, String salt) {
+        StringBuilder salted = new StringBuilder();
+
+        for (int i = 0; i < password.length(); i++) {
+            salted.append(salt.charAt((i + 5) % salt.length()));
+            salted.append(password.charAt(i));
+        }
+
+        Buffers buffers = BUFFERS.get();
+        byte[] hash = buffers.digest.digest(salted.toString().getBytes(StandardCharsets.UTF_8));
+
+        toHex(hash, buffers.hex);
+
+        return new String(buffers.hex);
+    }
+}
@@ -0,0 +1,29 @@
+package com.booksly.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for one statement execution. Its duration is the
+ * execute call, and for queries it's committed once the result set has been
+ * read, so it has the row count.
+ */
+@Name("booksly.Query")
+@Label("Query")
+@Category("Booksly")
+@Description("A SQL statement executed through the statement registry")
+class QueryEvent extends Event {
+    @Label("Caller")
+    @Description("The app method that ran the statement")
+    String caller;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    @Description("Rows read from the result set, or the update count")
+    long rows;
+}
@@ -0,0 +1,160 @@
+package com.booksly.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The reference data the sample data generator looks up per generated row,
+ * read once into arrays indexed by id so generating a row never touches the
+ * database.
+ *
+ * A book's genres are stored in compressed sparse row form: the genres of
+ * book b are genreIds[genreStart[b]] up to genreIds[genreStart[b + 1]].
+ */
+class ReferenceSnapshot {
+    private static final int FETCH_SIZE = 10_000;
+
+    private final int[] bookLengths;
+    private final int[] genreStart;
+    private final int[] genreIds;
+    private final long[] userCreationMillis;
+    private final Map<String, Integer> genreIdsByName;
+
+    private ReferenceSnapshot(int[] bookLengths, int[] genreStart, int[] genreIds, long[] userCreationMillis,
+            Map<String, Integer> genreIdsByName) {
+        this.bookLengths = bookLengths;
+        this.genreStart = genreStart;
+        this.genreIds = genreIds;
+        this.userCreationMillis = userCreationMillis;
+        this.genreIdsByName = genreIdsByName;
+    }
+
+    /**
+     * Reads the snapshot, with one query per table.
+     *
+     * @param connection The connection to read through
+     * @return The snapshot
+     * @throws SQLException If there was an error with a query
+     */
+    static ReferenceSnapshot load(Connection connection) throws SQLException {
+        // Streams the larger tables through a cursor instead of buffering them
+        connection.setAutoCommit(false);
+
+        try {
+            int maxBookId = queryInt(connection, "select coalesce(max(book_id), 0) from book");
+            int maxUserId = queryInt(connection, "select coalesce(max(user_id), 0) from users");
+
+            int[] bookLengths = new int[maxBookId + 1];
+
+            ResultSet result = query(connection, "select book_id, length from book");
+
+            while (result.next()) {
+                bookLengths[result.getInt(1)] = result.getInt(2);
+            }
+
+            // Counted first so the ids can go straight into their final slots
+            int[] genreStart = new int[maxBookId + 2];
+
+            result = query(connection, "select book_id, count(*) from book_genre group by book_id");
+
+            while (result.next()) {
+                genreStart[result.getInt(1) + 1] = result.getInt(2);
+            }
+
+            for (int bookId = 1; bookId < genreStart.length; bookId++) {
+                genreStart[bookId] += genreStart[bookId - 1];
+            }
+
+            int[] genreIds = new int[genreStart[maxBookId + 1]];
+            int[] filled = new int[maxBookId + 1];
+
+            result = query(connection, "select book_id, genre_id from book_genre");
+
+            while (result.next()) {
+                int bookId = result.getInt(1);
+                genreIds[genreStart[bookId] + filled[bookId]++] = result.getInt(2);
+            }
+
+            long[] userCreationMillis = new long[maxUserId + 1];
+
+            result = query(connection, "select user_id, creation_date from users");
+
+            while (result.next()) {
+                userCreationMillis[result.getInt(1)] = result.getTimestamp(2).getTime();
+            }
+
+            Map<String, Integer> genreIdsByName = new HashMap<>();
+
+            result = query(connection, "select genre_id, name from genre");
+
+            while (result.next()) {
+                genreIdsByName.put(result.getString(2), result.getInt(1));
+            }
+
+            connection.commit();
+
+            return new ReferenceSnapshot(bookLengths, genreStart, genreIds, userCreationMillis, genreIdsByName);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static ResultSet query(Connection connection, String sql) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql);
+        ps.setFetchSize(FETCH_SIZE);
+        return ps.executeQuery();
+    }
+
+    private static int queryInt(Connection connection, String sql) throws SQLException {
+        ResultSet result = query(connection, sql);
+        result.next();
+        return result.getInt(1);
+    }
+
+    int getBookLength(int bookId) {
+        return this.bookLengths[bookId];
+    }
+
+    int getGenreCount(int bookId) {
+        return this.genreStart[bookId + 1] - this.genreStart[bookId];
+    }
+
+    /**
+     * Gets one of a book's genres.
+     *
+     * @param bookId The book's id
+     * @param index  Which of its genres, from 0 to its genre count
+     * @return The genre's id
+     */
+    int getGenreId(int bookId, int index) {
+        return this.genreIds[this.genreStart[bookId] + index];
+    }
+
+    /**
+     * Looks up a genre's id by name.
+     *
+     * @param name The genre's name
+     * @return The genre's id, or -1 if there's no genre with that name
+     */
+    int getGenreId(String name) {
+        return this.genreIdsByName.getOrDefault(name, -1);
+    }
+
+    boolean hasGenre(int bookId, int genreId) {
+        for (int i = this.genreStart[bookId]; i < this.genreStart[bookId + 1]; i++) {
+            if (this.genreIds[i] == genreId) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    long getUserCreationMillis(int userId) {
+        return this.userCreationMillis[userId];
+    }
+}
@@ -0,0 +1,24 @@
+package com.booksly.app;
+
+/**
+ * Counts the database roundtrips each thread makes: statement executions,
+ * commits and rollbacks, and connection validations. Counts are per thread so
+ * a caller can tell how many roundtrips its own work took by reading the count
+ * before and after.
+ */
+class Roundtrips {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    static void increment() {
+        COUNT.get()[0]++;
+    }
+
+    /**
+     * Gets the number of roundtrips the current thread has made.
+     *
+     * @return The count, since the thread started
+     */
+    static long get() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,29 @@
+package com.booksly.app;
+
+import java.sql.SQLException;
+
+/**
+ * Writes generated rows into one table. Values are written column by column
+ * in the order the columns were given, and {@link #endRow()} finishes each
+ * row. Rows are committed in chunks as they're written, and closing the
+ * writer commits the rest.
+ *
+ * Dates and timestamps are passed as epoch milliseconds and stored as the
+ * local date and time of that instant, the same as setDate and setTimestamp.
+ */
+interface RowWriter extends AutoCloseable {
+    void writeInt(int value) throws SQLException;
+
+    void writeText(CharSequence value) throws SQLException;
+
+    void writeDate(long epochMillis) throws SQLException;
+
+    void writeTimestamp(long epochMillis) throws SQLException;
+
+    void endRow() throws SQLException;
+
+    long getRowCount();
+
+    @Override
+    void close() throws SQLException;
+}
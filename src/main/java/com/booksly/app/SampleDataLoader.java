@@ -4,320 +4,694 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
-import java.util.Set;
-
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fills the database with generated sample data. Rows go through a
+ * {@link RowWriter}, either a COPY stream or batched inserts. Pairs for
+ * tables with a composite key are de-duplicated in a {@link PairSet} before
+ * they're written, so every row written is accepted and one conflict can't
+ * fail a whole chunk.
+ *
+ * Row values are built in reused buffers and timestamps are kept as epoch
+ * milliseconds, so generating a row creates little garbage. Anything a row
+ * depends on that's already in the database is read up front into a
+ * {@link ReferenceSnapshot}, so generating a row never waits on a query.
+ *
+ * The dataset's size is set by a scale factor, where scale 1 is 10,000 users
+ * and books and every other table grows in proportion. Every table draws from
+ * its own random stream seeded from one seed, so the same seed and scale
+ * always generate the same data, whichever order the tables are loaded in.
+ * Books are picked for ratings, sessions and collections with Zipfian
+ * popularity and followees with a power law, so a few books and users get most
+ * of the activity, as they would in a real catalog.
+ *
+ * {@link #loadAll()} loads every table in dependency order, running tables
+ * that don't depend on each other at the same time. The largest tables are
+ * generated in chunks of users, each with its own random stream, so chunks can
+ * load in parallel and still generate the same rows as a serial load.
+ *
+ * Loads can be resumed. Each task, a table or a chunk, saves a
+ * {@link LoadCheckpoint} with every chunk of rows it commits, and a rerun with
+ * the same seed and scale skips finished tasks and the rows a failed one had
+ * already committed. Tables with serial ids are given explicit ids so rows get
+ * the same ids however many attempts a load takes.
+ */
 public class SampleDataLoader {
-    private static Connection CONNECTION;
+    private static ConnectionPool POOL;
 
-    public static void setCONNECTION(Connection connection) {
-        CONNECTION = connection;
+    public enum LoadMode {
+        /** COPY FROM STDIN, the fastest way to load */
+        COPY,
+        /** Batched inserts, for servers that don't allow COPY */
+        BATCH
     }
 
-    public static void loadSampleAccesses() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement(
-                        "insert into user_access(access_id, user_id, access_time) values (DEFAULT, ?, ?)");
+    private static LoadMode LOAD_MODE = LoadMode.COPY;
+    private static int BATCH_SIZE = 1000;
+    private static int COPY_CHUNK_SIZE = 100_000;
+    private static int SCALE = 1;
+    private static long SEED = 42;
+
+    private static final int MAX_SCALE = 1000;
+
+    // Rows per unit of scale, the sizes of the original sample dataset
+    static final int USERS_PER_SCALE = 10_000;
+    static final int BOOKS_PER_SCALE = 10_000;
+    private static final int CONTRIBUTORS_PER_SCALE = 10_000;
+    private static final int COLLECTIONS_PER_SCALE = 4000;
+    private static final int ACCESSES_PER_SCALE = 25_000;
+    private static final int RATINGS_PER_SCALE = 50_000;
+    private static final int GENRE_RATINGS_PER_SCALE = 25_000;
+    private static final int FOLLOWS_PER_SCALE = 25_000;
+    private static final int SESSIONS_PER_SCALE = 25_000;
+    private static final int COLLECTION_BOOKS_PER_SCALE = 25_000;
+
+    // Zipf exponents, where around 1 is typical of book sales and follower
+    // counts
+    private static final double BOOK_POPULARITY_SKEW = 1.0;
+    private static final double FOLLOWEE_POPULARITY_SKEW = 1.1;
+
+    private static final long SEED_MIXER = 0x9E3779B97F4A7C15L;
+
+    // The tables whose ids the loader writes, and their id columns
+    private static final String[][] SERIAL_TABLES = {
+            { "users", "user_id" },
+            { "book", "book_id" },
+            { "contributor", "contributor_id" },
+            { "genre", "genre_id" },
+            { "collection", "collection_id" } };
+
+    // Users are generated this many at a time, so each batch's passwords can
+    // be hashed in parallel
+    private static final int HASH_BATCH_SIZE = 4096;
+
+    // Unsalted passwords are rehashed and committed this many at a time
+    private static final int REHASH_PAGE_SIZE = 1000;
+
+    // Accesses, ratings and sessions are generated this many users at a time
+    private static final int USERS_PER_CHUNK = 2500;
+
+    @FunctionalInterface
+    private interface ChunkLoader {
+        long load(int firstUserId, int lastUserId) throws SQLException;
+    }
 
-        Random randomId = new Random();
+    public static void setConnectionPool(ConnectionPool pool) {
+        POOL = pool;
+    }
 
-        for (int i = 0; i < 25000; i++) {
-            int userId = randomId.nextInt(1, 10001);
-            Timestamp creationDate = getCreationTimestamp(userId);
-            Timestamp accessTime = getRandomTimestamp(creationDate, 2025);
+    public static void setLoadMode(LoadMode loadMode) {
+        LOAD_MODE = loadMode;
+    }
 
-            ps.setInt(1, userId);
-            ps.setTimestamp(2, accessTime);
+    /**
+     * Sets how many rows are sent and committed at a time in batch mode.
+     *
+     * @param batchSize The number of rows per batch
+     */
+    public static void setBatchSize(int batchSize) {
+        BATCH_SIZE = batchSize;
+    }
 
-            ps.executeUpdate();
+    /**
+     * Sets how many rows each COPY sends and commits in copy mode.
+     *
+     * @param chunkSize The number of rows per COPY
+     */
+    public static void setCopyChunkSize(int chunkSize) {
+        COPY_CHUNK_SIZE = chunkSize;
+    }
+
+    /**
+     * Sets how large a dataset to generate.
+     *
+     * @param scale The scale factor, from 1 to 1000
+     * @throws IllegalArgumentException If the scale factor is out of range
+     */
+    public static void setScale(int scale) {
+        if (scale < 1 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale must be between 1 and " + MAX_SCALE);
         }
+
+        SCALE = scale;
     }
 
-    private static java.sql.Timestamp getRandomTimestamp(int startYear, int endYear) {
-        Random random = new Random();
-        long startMillis = Timestamp.valueOf(startYear + "-01-01 00:00:00").getTime();
-        long endMillis = Timestamp.valueOf(endYear + "-12-31 23:59:59").getTime();
-        long randomMillisSinceEpoch = startMillis + (long) (random.nextDouble() * (endMillis - startMillis));
-        return new Timestamp(randomMillisSinceEpoch);
+    /**
+     * Sets the seed every table's random stream is derived from.
+     *
+     * @param seed The seed
+     */
+    public static void setSeed(long seed) {
+        SEED = seed;
     }
 
-    private static Timestamp getRandomTimestamp(Timestamp startDate, int maxYear) {
-        Random random = new Random();
-        long startMillis = startDate.getTime();
-        long endMillis = Timestamp.valueOf(maxYear + "-12-31 23:59:59").getTime();
-        long randomMillisSinceEpoch = startMillis + (long) (random.nextDouble() * (endMillis - startMillis));
-        return new Timestamp(randomMillisSinceEpoch);
+    // Each task gets its own stream, so what one task generates doesn't
+    // depend on which tasks ran before it
+    private static Random randomFor(String task) {
+        return new Random((SEED + task.hashCode()) * SEED_MIXER);
     }
 
-    public static void loadSampleUsers() throws SQLException {
-        try {
-            Scanner first = new Scanner(new File("./data/first_names.txt"));
-            Scanner last = new Scanner(new File("./data/last_names.txt"));
+    private static String chunkTask(String stream, int firstUserId) {
+        return stream + ":" + firstUserId;
+    }
 
-            List<String> firstNames = new ArrayList<>();
+    private static int userCount() {
+        return USERS_PER_SCALE * SCALE;
+    }
 
-            while (first.hasNextLine()) {
-                firstNames.add(first.nextLine().strip());
-            }
+    private static int bookCount() {
+        return BOOKS_PER_SCALE * SCALE;
+    }
 
-            List<String> lastNames = new ArrayList<>();
+    /**
+     * Loads the whole sample dataset into an empty database. Each table starts
+     * as soon as the tables it references are loaded, and up to one table or
+     * chunk per pooled connection loads at a time.
+     *
+     * @throws SQLException If loading a table failed
+     */
+    public static void loadAll() throws SQLException {
+        LoadOrchestrator load = new LoadOrchestrator();
+        AtomicReference<ReferenceSnapshot> snapshot = new AtomicReference<>();
+
+        load.addStage("genre", List.of(), List.of(resumable("genre", SampleDataLoader::loadGenres)));
+        load.addStage("contributor", List.of(),
+                List.of(resumable("contributor", SampleDataLoader::loadSampleContributors)));
+        load.addStage("users", List.of(), List.of(resumable("users", SampleDataLoader::loadSampleUsers)));
+        load.addStage("book", List.of(), List.of(resumable("book", SampleDataLoader::loadSampleBooks)));
+        load.addStage("book_genre", List.of("book", "genre"),
+                List.of(resumable("book_genre", SampleDataLoader::loadSampleGenres)));
+        load.addStage("book_author", List.of("book", "contributor"),
+                List.of(resumable("book_author", () -> loadSampleBookContributors("author"))));
+
+        // Both refresh the same book_search rows, and loading them together
+        // would leave each book's document without the other's names
+        load.addStage("book_publisher", List.of("book_author"),
+                List.of(resumable("book_publisher", () -> loadSampleBookContributors("publisher"))));
+
+        load.addStage("snapshot", List.of("users", "book", "book_genre"), List.of(() -> {
+            snapshot.set(loadSnapshot());
+            return 0;
+        }));
+        load.addStage("user_access", List.of("snapshot"), userChunks("user_access",
+                (first, last) -> loadSampleAccesses(snapshot.get(), first, last)));
+        load.addStage("rating", List.of("snapshot"), userChunks("rating_by_genre",
+                (first, last) -> loadSampleRatingsV2(snapshot.get(), first, last)));
+        load.addStage("session", List.of("snapshot"), userChunks("session",
+                (first, last) -> loadSampleSessions(snapshot.get(), first, last)));
+        load.addStage("follows", List.of("users"),
+                List.of(resumable("follows", SampleDataLoader::loadSampleFollows)));
+        load.addStage("collection", List.of("users"),
+                List.of(resumable("collection", SampleDataLoader::loadSampleCollections)));
+        load.addStage("collection_book", List.of("collection", "book"),
+                List.of(resumable("collection_book", SampleDataLoader::loadSampleCollectionBooks)));
+        load.addStage("sequences", List.of("users", "book", "contributor", "genre", "collection"), List.of(() -> {
+            resetSequences();
+            return 0;
+        }));
+
+        load.run(POOL.getMaxSize());
+    }
 
-            while (last.hasNextLine()) {
-                lastNames.add(last.nextLine().strip());
-            }
+    // Skips the task if an earlier load finished it, and marks it finished
+    // once it's loaded
+    private static LoadOrchestrator.LoadTask resumable(String task, LoadOrchestrator.LoadTask loader) {
+        return () -> {
+            try (Connection connection = POOL.getConnection()) {
+                LoadCheckpoint checkpoint = LoadCheckpoint.open(connection, task, SEED, SCALE);
 
-            PreparedStatement ps = CONNECTION
-                    .prepareStatement(
-                            "insert into users(user_id, username, password_hash, first_name, last_name, email, creation_date, last_access_date, password_salt) values (DEFAULT, ?, ?, ?, ?, ?, ?, ?)");
-
-            for (int i = 0; i < 100; i++) {
-                for (int j = 0; j < 100; j++) {
-                    String firstName = firstNames.get(i);
-                    String lastName = lastNames.get(j);
-                    String username = firstName + lastName;
-                    String email = firstName.toLowerCase() + lastName.toLowerCase() + "@gmail.com";
-                    String password = "pass_" + firstName + lastName;
-                    String salt = User.generateSalt();
-                    String passwordHash = User.hashPassword(password, salt);
-                    Timestamp creationDate = getRandomTimestamp(2020, 2025);
-                    Timestamp lastAccessDate = getRandomTimestamp(creationDate, 2025);
-
-                    ps.setString(1, username);
-                    ps.setString(2, passwordHash);
-                    ps.setString(3, firstName);
-                    ps.setString(4, lastName);
-                    ps.setString(5, email);
-                    ps.setTimestamp(6, creationDate);
-                    ps.setTimestamp(7, lastAccessDate);
-                    ps.setString(8, salt);
-
-                    ps.executeUpdate();
+                if (checkpoint.isCompleted()) {
+                    return checkpoint.getRowsLoaded();
                 }
             }
 
-            first.close();
-            last.close();
-        } catch (IOException e) {
-            System.out.println(e.getLocalizedMessage());
+            long rows = loader.run();
+
+            try (Connection connection = POOL.getConnection()) {
+                LoadCheckpoint.open(connection, task, SEED, SCALE).complete(connection, rows);
+            }
+
+            return rows;
+        };
+    }
+
+    private static List<LoadOrchestrator.LoadTask> userChunks(String stream, ChunkLoader loader) {
+        List<LoadOrchestrator.LoadTask> chunks = new ArrayList<>();
+
+        for (int first = 1; first <= userCount(); first += USERS_PER_CHUNK) {
+            int firstUserId = first;
+            int lastUserId = Math.min(first + USERS_PER_CHUNK - 1, userCount());
+
+            chunks.add(resumable(chunkTask(stream, firstUserId), () -> loader.load(firstUserId, lastUserId)));
         }
+
+        return chunks;
     }
 
-    public static void saltAllUnsaltedPasswords() throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "select user_id, first_name, last_name from users where password_salt is null");
+    private static long loadChunks(String stream, ChunkLoader loader) throws SQLException {
+        long rows = 0;
 
-        ResultSet result = ps.executeQuery();
+        for (LoadOrchestrator.LoadTask chunk : userChunks(stream, loader)) {
+            rows += chunk.run();
+        }
 
-        PreparedStatement inner = CONNECTION.prepareStatement(
-                "update users set password_hash = ?, password_salt = ? where user_id = ?");
+        return rows;
+    }
 
-        while (result.next()) {
-            int userId = result.getInt("user_id");
-            String firstName = result.getString("first_name");
-            String lastName = result.getString("last_name");
+    // Ids are written explicitly, so the sequences have to be moved past them
+    // before the app inserts anything
+    private static void resetSequences() throws SQLException {
+        try (Connection connection = POOL.getConnection()) {
+            for (String[] table : SERIAL_TABLES) {
+                String sql = String.format(
+                        "select setval(pg_get_serial_sequence('%1$s', '%2$s'), coalesce(max(%2$s), 0) + 1, false) "
+                                + "from %1$s",
+                        table[0], table[1]);
+
+                connection.prepareStatement(sql).executeQuery();
+            }
+        }
+    }
 
-            String salt = User.generateSalt();
-            String newHash = User.hashPassword("pass_" + firstName + lastName, salt);
+    // The share of a table's rows that belong to a chunk's users
+    private static int chunkRowCount(int rowsPerScale, int firstUserId, int lastUserId) {
+        return (int) ((long) rowsPerScale * (lastUserId - firstUserId + 1) / USERS_PER_SCALE);
+    }
 
-            inner.setString(1, newHash);
-            inner.setString(2, salt);
-            inner.setInt(3, userId);
+    private static RowWriter openWriter(Connection connection, String task, String tableName, String... columns)
+            throws SQLException {
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(connection, task, SEED, SCALE);
+        RowWriter writer;
 
-            inner.executeUpdate();
+        if (LOAD_MODE == LoadMode.COPY) {
+            writer = new CopyInserter(connection, tableName, List.of(columns), COPY_CHUNK_SIZE, checkpoint);
+        } else {
+            writer = new BatchInserter(connection, tableName, List.of(columns), BATCH_SIZE, checkpoint);
         }
+
+        // Resuming, so the rows the last attempt committed are generated
+        // again but not written
+        if (checkpoint.getRowsLoaded() > 0) {
+            return new SkippingWriter(writer, checkpoint.getRowsLoaded());
+        }
+
+        return writer;
     }
 
-    public static void loadSampleContributors() throws SQLException {
-        try {
-            Scanner first = new Scanner(new File("./data/contributor_first.txt"));
-            Scanner last = new Scanner(new File("./data/contributor_last.txt"));
+    private static ReferenceSnapshot loadSnapshot() throws SQLException {
+        try (Connection connection = POOL.getConnection()) {
+            return ReferenceSnapshot.load(connection);
+        }
+    }
 
-            List<String> firstNames = new ArrayList<>();
+    private static long startOfYear(int year) {
+        return Timestamp.valueOf(year + "-01-01 00:00:00").getTime();
+    }
 
-            while (first.hasNextLine()) {
-                firstNames.add(first.nextLine().strip());
-            }
+    private static long endOfYear(int year) {
+        return Timestamp.valueOf(year + "-12-31 23:59:59").getTime();
+    }
 
-            List<String> lastNames = new ArrayList<>();
+    private static long getRandomMillis(Random rng, long startMillis, long endMillis) {
+        return startMillis + (long) (rng.nextDouble() * (endMillis - startMillis));
+    }
+
+    static List<String> readLines(String path) throws FileNotFoundException {
+        List<String> lines = new ArrayList<>();
 
-            while (last.hasNextLine()) {
-                lastNames.add(last.nextLine().strip());
+        try (Scanner in = new Scanner(new File(path))) {
+            while (in.hasNextLine()) {
+                lines.add(in.nextLine().strip());
             }
+        }
 
-            PreparedStatement ps = CONNECTION
-                    .prepareStatement("insert into contributor(contributor_id, name) values (DEFAULT, ?)");
+        return lines;
+    }
 
-            for (int i = 0; i < 100; i++) {
-                for (int j = 0; j < 100; j++) {
-                    String firstName = firstNames.get(i);
-                    String lastName = lastNames.get(j);
-                    String name = firstName + " " + lastName;
+    /**
+     * Gets the username the sample dataset gives a user. Every first name is
+     * paired with every last name in order, and once the pairs run out they
+     * repeat with the round number on the end.
+     *
+     * @param firstNames The first names, from data/first_names.txt
+     * @param lastNames  The last names, from data/last_names.txt
+     * @param userId     The user's id
+     * @return The username
+     */
+    static String sampleUsername(List<String> firstNames, List<String> lastNames, int userId) {
+        int i = userId - 1;
+        int round = i / (firstNames.size() * lastNames.size());
+        String name = firstNames.get(i / lastNames.size() % firstNames.size()) + lastNames.get(i % lastNames.size());
+
+        return round > 0 ? name + round : name;
+    }
 
-                    ps.setString(1, name);
+    public static long loadSampleAccesses() throws SQLException {
+        ReferenceSnapshot snapshot = loadSnapshot();
+        return loadChunks("user_access", (first, last) -> loadSampleAccesses(snapshot, first, last));
+    }
 
-                    ps.executeUpdate();
-                }
+    static long loadSampleAccesses(ReferenceSnapshot snapshot, int firstUserId, int lastUserId)
+            throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, chunkTask("user_access", firstUserId), "user_access",
+                        "user_id", "access_time")) {
+            Random rng = randomFor(chunkTask("user_access", firstUserId));
+            long end = endOfYear(2025);
+            int accessCount = chunkRowCount(ACCESSES_PER_SCALE, firstUserId, lastUserId);
+
+            for (int i = 0; i < accessCount; i++) {
+                int userId = rng.nextInt(firstUserId, lastUserId + 1);
+                long creationDate = snapshot.getUserCreationMillis(userId);
+
+                writer.writeInt(userId);
+                writer.writeTimestamp(getRandomMillis(rng, creationDate, end));
+                writer.endRow();
             }
 
-            first.close();
-            last.close();
-        } catch (IOException e) {
-            System.out.println(e.getLocalizedMessage());
+            return writer.getRowCount();
         }
     }
 
-    private static Timestamp getCreationTimestamp(int userId) throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("select creation_date from users where user_id = ?");
+    public static long loadSampleUsers() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "users", "users", "user_id", "username", "password_hash",
+                        "first_name", "last_name", "email", "creation_date", "last_access_date", "password_salt")) {
+            List<String> firstNames = readLines("./data/first_names.txt");
+            List<String> lastNames = readLines("./data/last_names.txt");
+
+            Random rng = randomFor("users");
+            long start = startOfYear(2020);
+            long end = endOfYear(2025);
+            int nameCount = firstNames.size() * lastNames.size();
+
+            List<String> passwords = new ArrayList<>(HASH_BATCH_SIZE);
+            List<String> salts = new ArrayList<>(HASH_BATCH_SIZE);
+            long[] creationDates = new long[HASH_BATCH_SIZE];
+            long[] lastAccessDates = new long[HASH_BATCH_SIZE];
+
+            StringBuilder text = new StringBuilder();
+
+            // Hashing is most of the work, so each batch's values are drawn
+            // first and its passwords hashed in parallel before it's written
+            for (int batchStart = 0; batchStart < userCount(); batchStart += HASH_BATCH_SIZE) {
+                int batchEnd = Math.min(batchStart + HASH_BATCH_SIZE, userCount());
+
+                passwords.clear();
+                salts.clear();
+
+                for (int i = batchStart; i < batchEnd; i++) {
+                    String firstName = firstNames.get(i / lastNames.size() % firstNames.size());
+                    String lastName = lastNames.get(i % lastNames.size());
+
+                    passwords.add("pass_" + firstName + lastName);
+                    salts.add(Integer.toHexString(rng.nextInt(Integer.MAX_VALUE)));
+                    creationDates[i - batchStart] = getRandomMillis(rng, start, end);
+                    lastAccessDates[i - batchStart] = getRandomMillis(rng, creationDates[i - batchStart], end);
+                }
 
-        ps.setInt(1, userId);
+                String[] passwordHashes = PasswordHasher.hashAll(passwords, salts);
 
-        ResultSet result = ps.executeQuery();
+                for (int i = batchStart; i < batchEnd; i++) {
+                    String firstName = firstNames.get(i / lastNames.size() % firstNames.size());
+                    String lastName = lastNames.get(i % lastNames.size());
+                    // Usernames and emails are unique, so names past the first
+                    // round get the round number on the end
+                    int round = i / nameCount;
 
-        if (result.next()) {
-            return result.getTimestamp(1);
-        } else {
-            System.err.println("user not found");
-            System.exit(1);
-            return null;
-        }
-    }
+                    text.setLength(0);
+                    text.append(firstName).append(lastName);
 
-    public static void loadGenres() throws SQLException {
-        try (Scanner in = new Scanner(new File("./data/genres.txt"))) {
-            List<String> genreNames = new ArrayList<>();
+                    if (round > 0) {
+                        text.append(round);
+                    }
 
-            while (in.hasNext()) {
-                genreNames.add(in.nextLine().strip());
-            }
+                    writer.writeInt(i + 1);
+                    writer.writeText(text);
+                    writer.writeText(passwordHashes[i - batchStart]);
+                    writer.writeText(firstName);
+                    writer.writeText(lastName);
 
-            PreparedStatement ps = CONNECTION.prepareStatement("insert into genre values (DEFAULT, ?)");
+                    text.setLength(0);
+                    text.append(firstName.toLowerCase()).append(lastName.toLowerCase());
 
-            for (String genreName : genreNames) {
-                ps.setString(1, genreName);
+                    if (round > 0) {
+                        text.append(round);
+                    }
 
-                ps.executeUpdate();
+                    writer.writeText(text.append("@gmail.com"));
+                    writer.writeTimestamp(creationDates[i - batchStart]);
+                    writer.writeTimestamp(lastAccessDates[i - batchStart]);
+                    writer.writeText(salts.get(i - batchStart));
+                    writer.endRow();
+                }
             }
+
+            return writer.getRowCount();
         } catch (IOException e) {
-            System.err.println(e.getLocalizedMessage());
-            System.exit(1);
+            // Failing the stage keeps it from being checkpointed as loaded
+            throw new SQLException("Couldn't load users: " + e.getLocalizedMessage(), e);
         }
     }
 
-    private static final List<String> AUDIENCES = List.of("Kids", "Teens", "Adults");
+    /**
+     * Salts and rehashes every password that was stored without a salt. Users
+     * are read a page at a time in id order, each page's passwords are hashed
+     * in parallel and its updates are sent as one batch and committed, so no
+     * transaction stays open for long. Only users still without a salt are
+     * read or updated, so the job can be stopped at any point and rerun to
+     * pick up where it stopped.
+     *
+     * @throws SQLException If there was an error with a query
+     */
+    public static void saltAllUnsaltedPasswords() throws SQLException {
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement count = connection.prepareStatement(
+                    "select count(*) from users where password_salt is null");
+
+            ResultSet countResult = count.executeQuery();
+            countResult.next();
+            long total = countResult.getLong(1);
+
+            PreparedStatement page = connection.prepareStatement(
+                    "select user_id, first_name, last_name from users\r\n" + //
+                            "where password_salt is null and user_id > ?\r\n" + //
+                            "order by user_id\r\n" + //
+                            "limit ?");
+
+            PreparedStatement update = connection.prepareStatement(
+                    "update users set password_hash = ?, password_salt = ?\r\n" + //
+                            "where user_id = ? and password_salt is null");
+
+            List<Integer> userIds = new ArrayList<>(REHASH_PAGE_SIZE);
+            List<String> passwords = new ArrayList<>(REHASH_PAGE_SIZE);
+            List<String> salts = new ArrayList<>(REHASH_PAGE_SIZE);
+
+            long startTime = System.nanoTime();
+            long rehashed = 0;
+            int lastUserId = 0;
+
+            while (true) {
+                userIds.clear();
+                passwords.clear();
+                salts.clear();
+
+                page.setInt(1, lastUserId);
+                page.setInt(2, REHASH_PAGE_SIZE);
+
+                ResultSet result = page.executeQuery();
+
+                while (result.next()) {
+                    userIds.add(result.getInt("user_id"));
+                    passwords.add("pass_" + result.getString("first_name") + result.getString("last_name"));
+                    salts.add(User.generateSalt());
+                }
 
-    public static void loadSampleBooks() throws SQLException {
-        try {
-            Scanner adjectiveScanner = new Scanner(new File("./data/book_adjectives.txt"));
-            Scanner nounScanner = new Scanner(new File("./data/book_nouns.txt"));
+                if (userIds.isEmpty()) {
+                    break;
+                }
+
+                String[] hashes = PasswordHasher.hashAll(passwords, salts);
 
-            List<String> adjectives = new ArrayList<>();
+                connection.setAutoCommit(false);
 
-            while (adjectiveScanner.hasNextLine()) {
-                adjectives.add(adjectiveScanner.nextLine().strip());
+                try {
+                    for (int i = 0; i < userIds.size(); i++) {
+                        update.setString(1, hashes[i]);
+                        update.setString(2, salts.get(i));
+                        update.setInt(3, userIds.get(i));
+                        update.addBatch();
+                    }
+
+                    update.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    update.clearBatch();
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+
+                rehashed += userIds.size();
+                lastUserId = userIds.get(userIds.size() - 1);
+
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+
+                System.out.printf("rehashed %d of %d passwords (%.0f/s)%n", rehashed, total,
+                        seconds == 0 ? 0 : rehashed / seconds);
             }
+        }
+    }
+
+    public static long loadSampleContributors() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "contributor", "contributor", "contributor_id", "name")) {
+            List<String> firstNames = readLines("./data/contributor_first.txt");
+            List<String> lastNames = readLines("./data/contributor_last.txt");
 
-            List<String> nouns = new ArrayList<>();
+            StringBuilder name = new StringBuilder();
+            int contributorCount = CONTRIBUTORS_PER_SCALE * SCALE;
 
-            while (nounScanner.hasNextLine()) {
-                nouns.add(nounScanner.nextLine().strip());
+            for (int i = 0; i < contributorCount; i++) {
+                name.setLength(0);
+                name.append(firstNames.get(i / lastNames.size() % firstNames.size())).append(' ')
+                        .append(lastNames.get(i % lastNames.size()));
+
+                writer.writeInt(i + 1);
+                writer.writeText(name);
+                writer.endRow();
             }
 
-            PreparedStatement ps = CONNECTION
-                    .prepareStatement(
-                            "insert into book(book_id, title, audience, release_date, length) values (DEFAULT, ?, ?, ?, ?)");
+            return writer.getRowCount();
+        } catch (IOException e) {
+            throw new SQLException("Couldn't load contributor: " + e.getLocalizedMessage(), e);
+        }
+    }
 
-            Random rng = new Random();
+    public static long loadGenres() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "genre", "genre", "genre_id", "name")) {
+            int genreId = 1;
 
-            for (int i = 0; i < 100; i++) {
-                for (int j = 0; j < 100; j++) {
-                    String adjective = adjectives.get(i);
-                    String noun = nouns.get(j);
-                    String title = "The " + adjective + " " + noun;
-                    String audience = AUDIENCES.get(rng.nextInt(0, 3));
-                    Date releaseDate = new Date(getRandomTimestamp(1970, 2025).getTime());
-                    int length = rng.nextInt(50, 1001);
+            for (String genreName : readLines("./data/genres.txt")) {
+                writer.writeInt(genreId++);
+                writer.writeText(genreName);
+                writer.endRow();
+            }
 
-                    ps.setString(1, title);
-                    ps.setString(2, audience);
-                    ps.setDate(3, releaseDate);
-                    ps.setInt(4, length);
+            return writer.getRowCount();
+        } catch (IOException e) {
+            System.err.println(e.getLocalizedMessage());
+            System.exit(1);
+        }
 
-                    ps.executeUpdate();
-                }
+        return 0;
+    }
+
+    private static final List<String> AUDIENCES = List.of("Kids", "Teens", "Adults");
+
+    public static long loadSampleBooks() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "book", "book", "book_id", "title", "audience",
+                        "release_date", "length")) {
+            List<String> adjectives = readLines("./data/book_adjectives.txt");
+            List<String> nouns = readLines("./data/book_nouns.txt");
+
+            Random rng = randomFor("book");
+            long start = startOfYear(1970);
+            long end = endOfYear(2025);
+
+            StringBuilder title = new StringBuilder();
+
+            for (int i = 0; i < bookCount(); i++) {
+                title.setLength(0);
+                title.append("The ").append(adjectives.get(i / nouns.size() % adjectives.size())).append(' ')
+                        .append(nouns.get(i % nouns.size()));
+
+                writer.writeInt(i + 1);
+                writer.writeText(title);
+                writer.writeText(AUDIENCES.get(rng.nextInt(0, 3)));
+                writer.writeDate(getRandomMillis(rng, start, end));
+                writer.writeInt(rng.nextInt(50, 1001));
+                writer.endRow();
             }
 
-            adjectiveScanner.close();
-            nounScanner.close();
+            return writer.getRowCount();
         } catch (IOException e) {
-            System.out.println(e.getLocalizedMessage());
+            throw new SQLException("Couldn't load book: " + e.getLocalizedMessage(), e);
         }
     }
 
-    public static void loadSampleGenres() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into book_genre(book_id, genre_id) values (?, ?)");
+    public static long loadSampleGenres() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "book_genre", "book_genre", "book_id", "genre_id")) {
+            Random rng = randomFor("book_genre");
+            PairSet generated = new PairSet(bookCount() * 2);
 
-        Random rng = new Random();
+            for (int bookId = 1; bookId <= bookCount(); bookId++) {
+                int genreCount = rng.nextInt(1, 4);
 
-        for (int bookId = 1; bookId <= 10000; bookId++) {
-            int genreCount = rng.nextInt(1, 4);
+                int added = 0;
 
-            int added = 0;
+                while (added < genreCount) {
+                    int genreId = rng.nextInt(1, 21);
 
-            while (added < genreCount) {
-                ps.setInt(1, bookId);
-                int genreId = rng.nextInt(1, 21);
-                ps.setInt(2, genreId);
+                    if (!generated.add(bookId, genreId)) {
+                        continue;
+                    }
 
-                try {
-                    ps.executeUpdate();
+                    writer.writeInt(bookId);
+                    writer.writeInt(genreId);
+                    writer.endRow();
                     added++;
-                } catch (SQLException e) {
-                    System.err.println(e.getLocalizedMessage());
-                    System.out.println("conflicting genres, trying again");
                 }
             }
+
+            return writer.getRowCount();
         }
     }
 
-    public static void loadSampleBookContributors(String contributorType) throws SQLException {
+    public static long loadSampleBookContributors(String contributorType) throws SQLException {
         String tableName = "book_" + contributorType;
         String idFieldName = contributorType + "_id";
 
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into " + tableName + "(book_id, " + idFieldName + ") values (?, ?)");
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, tableName, tableName, "book_id", idFieldName)) {
+            Random rng = randomFor(tableName);
+            PairSet generated = new PairSet(bookCount() * 6 / 5);
+            int contributorIds = CONTRIBUTORS_PER_SCALE * SCALE;
 
-        Random rng = new Random();
+            for (int bookId = 1; bookId <= bookCount(); bookId++) {
+                int contributorCount = rng.nextInt(1, 11) >= 9 ? 2 : 1;
 
-        for (int bookId = 1; bookId <= 10000; bookId++) {
-            int contributorCount = rng.nextInt(1, 11) >= 9 ? 2 : 1;
+                int added = 0;
 
-            int added = 0;
+                while (added < contributorCount) {
+                    int contributorId = rng.nextInt(1, contributorIds + 1);
 
-            while (added < contributorCount) {
-                ps.setInt(1, bookId);
-                int contributorId = rng.nextInt(1, 10001);
-                ps.setInt(2, contributorId);
+                    if (!generated.add(bookId, contributorId)) {
+                        continue;
+                    }
 
-                try {
-                    ps.executeUpdate();
+                    writer.writeInt(bookId);
+                    writer.writeInt(contributorId);
+                    writer.endRow();
                     added++;
-                } catch (SQLException e) {
-                    System.err.println(e.getLocalizedMessage());
-                    System.out.println("conflicting contributors, trying again");
                 }
             }
+
+            return writer.getRowCount();
         }
     }
 
@@ -346,203 +720,235 @@ public class SampleDataLoader {
             Map.entry(19, List.of(5, 5, 4, 4, 3, 3, 3, 3, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1)),
             Map.entry(20, List.of(5, 5, 4, 4, 3, 3, 3, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1)));
 
-    public static void loadSampleRatingsV2() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into rating(user_id, book_id, rating) values (?, ?, ?)");
+    public static long loadSampleRatingsV2() throws SQLException {
+        ReferenceSnapshot snapshot = loadSnapshot();
+        return loadChunks("rating_by_genre", (first, last) -> loadSampleRatingsV2(snapshot, first, last));
+    }
 
-        Random rng = new Random();
+    // Chunks cover separate users, so pairs only need de-duplicating within
+    // a chunk
+    static long loadSampleRatingsV2(ReferenceSnapshot snapshot, int firstUserId, int lastUserId)
+            throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, chunkTask("rating_by_genre", firstUserId), "rating",
+                        "user_id", "book_id", "rating")) {
+            Random rng = randomFor(chunkTask("rating_by_genre", firstUserId));
+            ZipfSampler books = new ZipfSampler(bookCount(), BOOK_POPULARITY_SKEW);
+            int ratingCount = chunkRowCount(GENRE_RATINGS_PER_SCALE, firstUserId, lastUserId);
+            PairSet generated = new PairSet(ratingCount);
 
-        int added = 0;
+            int added = 0;
 
-        while (added < 25000) {
-            int userId = rng.nextInt(1, 10001);
-            int bookId = rng.nextInt(1, 10001);
-            Book book = new Book(bookId);
+            while (added < ratingCount) {
+                int userId = rng.nextInt(firstUserId, lastUserId + 1);
+                int bookId = books.nextId(rng);
 
-            int accumulatedRating = 0;
-            Set<Integer> genreIDs = book.getGenreIDs();
+                if (!generated.add(userId, bookId)) {
+                    continue;
+                }
 
-            for (int id : genreIDs) {
-                int index = rng.nextInt(0, 20);
-                accumulatedRating += RATING_DISTRIBUTIONS.get(id).get(index);
-            }
+                int accumulatedRating = 0;
+                int genreCount = snapshot.getGenreCount(bookId);
 
-            int rating = Math.round((float) accumulatedRating / genreIDs.size());
+                for (int i = 0; i < genreCount; i++) {
+                    int index = rng.nextInt(0, 20);
+                    accumulatedRating += RATING_DISTRIBUTIONS.get(snapshot.getGenreId(bookId, i)).get(index);
+                }
 
-            ps.setInt(1, userId);
-            ps.setInt(2, bookId);
-            ps.setInt(3, rating);
+                int rating = Math.round((float) accumulatedRating / genreCount);
 
-            try {
-                ps.executeUpdate();
+                writer.writeInt(userId);
+                writer.writeInt(bookId);
+                writer.writeInt(rating);
+                writer.endRow();
                 added++;
-            } catch (SQLException e) {
-                System.err.println(e.getLocalizedMessage());
-                System.out.println("conflicting ratings, trying again");
             }
+
+            return writer.getRowCount();
         }
     }
 
-    public static void loadSampleRatings() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into rating(user_id, book_id, rating) values (?, ?, ?)");
+    public static long loadSampleRatings() throws SQLException {
+        ReferenceSnapshot snapshot = loadSnapshot();
+        return loadChunks("rating", (first, last) -> loadSampleRatings(snapshot, first, last));
+    }
 
-        Random rng = new Random();
+    static long loadSampleRatings(ReferenceSnapshot snapshot, int firstUserId, int lastUserId)
+            throws SQLException {
+        int comedyId = snapshot.getGenreId("Comedy");
+        int actionId = snapshot.getGenreId("Action");
 
-        int added = 0;
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, chunkTask("rating", firstUserId), "rating",
+                        "user_id", "book_id", "rating")) {
+            Random rng = randomFor(chunkTask("rating", firstUserId));
+            ZipfSampler books = new ZipfSampler(bookCount(), BOOK_POPULARITY_SKEW);
+            int ratingCount = chunkRowCount(RATINGS_PER_SCALE, firstUserId, lastUserId);
+            PairSet generated = new PairSet(ratingCount);
 
-        while (added < 50000) {
-            int userId = rng.nextInt(1, 10001);
-            int bookId = rng.nextInt(1, 10001);
-            Book book = new Book(bookId);
+            int added = 0;
 
-            boolean hasLikedGenre = book.hasGenre("Comedy") || book.hasGenre("Action");
-            List<Integer> distribution = hasLikedGenre ? MODIFIED_RATING_DISTRIBUTION : RATING_DISTRIBUTION;
+            while (added < ratingCount) {
+                int userId = rng.nextInt(firstUserId, lastUserId + 1);
+                int bookId = books.nextId(rng);
 
-            int rating = distribution.get(rng.nextInt(0, 10));
+                if (!generated.add(userId, bookId)) {
+                    continue;
+                }
 
-            ps.setInt(1, userId);
-            ps.setInt(2, bookId);
-            ps.setInt(3, rating);
+                boolean hasLikedGenre = snapshot.hasGenre(bookId, comedyId) || snapshot.hasGenre(bookId, actionId);
+                List<Integer> distribution = hasLikedGenre ? MODIFIED_RATING_DISTRIBUTION : RATING_DISTRIBUTION;
 
-            try {
-                ps.executeUpdate();
+                writer.writeInt(userId);
+                writer.writeInt(bookId);
+                writer.writeInt(distribution.get(rng.nextInt(0, 10)));
+                writer.endRow();
                 added++;
-            } catch (SQLException e) {
-                System.err.println(e.getLocalizedMessage());
-                System.out.println("conflicting ratings, trying again");
             }
+
+            return writer.getRowCount();
         }
     }
 
-    public static void loadSampleFollows() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into follows(follower_id, followee_id) values (?, ?)");
+    public static long loadSampleFollows() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "follows", "follows", "follower_id", "followee_id")) {
+            Random rng = randomFor("follows");
+            ZipfSampler followees = new ZipfSampler(userCount(), FOLLOWEE_POPULARITY_SKEW);
+            int followCount = FOLLOWS_PER_SCALE * SCALE;
+            PairSet generated = new PairSet(followCount);
 
-        Random rng = new Random();
-
-        int added = 0;
+            int added = 0;
 
-        while (added < 25000) {
-            int followerId = rng.nextInt(1, 10001);
-            int followeeId = rng.nextInt(1, 10001);
+            while (added < followCount) {
+                int followerId = rng.nextInt(1, userCount() + 1);
+                int followeeId = followees.nextId(rng);
 
-            ps.setInt(1, followerId);
-            ps.setInt(2, followeeId);
+                if (!generated.add(followerId, followeeId)) {
+                    continue;
+                }
 
-            try {
-                ps.executeUpdate();
+                writer.writeInt(followerId);
+                writer.writeInt(followeeId);
+                writer.endRow();
                 added++;
-            } catch (SQLException e) {
-                System.err.println(e.getLocalizedMessage());
-                System.out.println("conflicting ratings, trying again");
             }
+
+            return writer.getRowCount();
         }
     }
 
-    public static void loadSampleSessions() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement(
-                        "insert into session(session_id, user_id, book_id, start_page, end_page, start_time, end_time) values (DEFAULT, ?, ?, ?, ?, ?, ?)");
-
-        Random rng = new Random();
-
-        for (int i = 1; i <= 25000; i++) {
-            int userId = rng.nextInt(1, 10001);
-            int bookId = rng.nextInt(1, 10001);
-
-            Book book = new Book(bookId);
-            int length = book.getLength();
-
-            int startPage = rng.nextInt(1, length + 1);
-            int endPage = rng.nextInt(startPage, length + 1);
-
-            Timestamp startTime = getRandomTimestamp(2020, 2024);
-            long startSeconds = startTime.toInstant().getEpochSecond();
-            // between 5 minutes and 5 hours
-            int duration = rng.nextInt(300, 18001);
-            Timestamp endTime = Timestamp.from(Instant.ofEpochSecond(startSeconds + duration));
+    public static long loadSampleSessions() throws SQLException {
+        ReferenceSnapshot snapshot = loadSnapshot();
+        return loadChunks("session", (first, last) -> loadSampleSessions(snapshot, first, last));
+    }
 
-            ps.setInt(1, userId);
-            ps.setInt(2, bookId);
-            ps.setInt(3, startPage);
-            ps.setInt(4, endPage);
-            ps.setTimestamp(5, startTime);
-            ps.setTimestamp(6, endTime);
+    static long loadSampleSessions(ReferenceSnapshot snapshot, int firstUserId, int lastUserId)
+            throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, chunkTask("session", firstUserId), "session", "user_id",
+                        "book_id", "start_page", "end_page", "start_time", "end_time")) {
+            Random rng = randomFor(chunkTask("session", firstUserId));
+            ZipfSampler books = new ZipfSampler(bookCount(), BOOK_POPULARITY_SKEW);
+            long start = startOfYear(2020);
+            long end = endOfYear(2024);
+            int sessionCount = chunkRowCount(SESSIONS_PER_SCALE, firstUserId, lastUserId);
+
+            for (int i = 1; i <= sessionCount; i++) {
+                int userId = rng.nextInt(firstUserId, lastUserId + 1);
+                int bookId = books.nextId(rng);
+
+                int length = snapshot.getBookLength(bookId);
+
+                int startPage = rng.nextInt(1, length + 1);
+                int endPage = rng.nextInt(startPage, length + 1);
+
+                // Whole seconds, between 5 minutes and 5 hours long
+                long startTime = getRandomMillis(rng, start, end) / 1000 * 1000;
+                long endTime = startTime + rng.nextInt(300, 18001) * 1000L;
+
+                writer.writeInt(userId);
+                writer.writeInt(bookId);
+                writer.writeInt(startPage);
+                writer.writeInt(endPage);
+                writer.writeTimestamp(startTime);
+                writer.writeTimestamp(endTime);
+                writer.endRow();
+            }
 
-            ps.executeUpdate();
+            return writer.getRowCount();
         }
     }
 
-    public static void loadSampleCollections() throws SQLException {
-        List<String> adverbs = new ArrayList<>();
-        List<String> adjectives = new ArrayList<>();
-        List<String> books = new ArrayList<>();
+    public static long loadSampleCollections() throws SQLException {
+        List<String> adverbs = null;
+        List<String> adjectives = null;
+        List<String> books = null;
 
         try {
-            Scanner adverbScanner = new Scanner(new File("./data/collections/adverbs.txt"));
-            Scanner adjectiveScanner = new Scanner(new File("./data/collections/adjectives.txt"));
-            Scanner bookScanner = new Scanner(new File("./data/collections/books.txt"));
-
-            while (adverbScanner.hasNext())
-                adverbs.add(adverbScanner.nextLine().strip());
-            while (adjectiveScanner.hasNext())
-                adjectives.add(adjectiveScanner.nextLine().strip());
-            while (bookScanner.hasNext())
-                books.add(bookScanner.nextLine().strip());
-
-            adverbScanner.close();
-            adjectiveScanner.close();
-            bookScanner.close();
+            adverbs = readLines("./data/collections/adverbs.txt");
+            adjectives = readLines("./data/collections/adjectives.txt");
+            books = readLines("./data/collections/books.txt");
         } catch (FileNotFoundException e) {
             System.out.println("couldn't load file");
             System.exit(1);
         }
 
-        String query = "insert into collection(collection_id, user_id, name) values (DEFAULT, ?, ?)";
-
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-
-        Random rng = new Random();
-
-        for (String book : books) {
-            for (String adjective : adjectives) {
-                for (String adverb : adverbs) {
-                    String collectionName = adverb + " " + adjective + " " + book;
-
-                    int userId = rng.nextInt(1, 10001);
-
-                    ps.setInt(1, userId);
-                    ps.setString(2, collectionName);
-
-                    ps.executeUpdate();
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "collection", "collection", "collection_id", "user_id",
+                        "name")) {
+            Random rng = randomFor("collection");
+
+            StringBuilder collectionName = new StringBuilder();
+            int collectionId = 1;
+
+            for (int round = 0; round < SCALE; round++) {
+                for (String book : books) {
+                    for (String adjective : adjectives) {
+                        for (String adverb : adverbs) {
+                            collectionName.setLength(0);
+                            collectionName.append(adverb).append(' ').append(adjective).append(' ').append(book);
+
+                            writer.writeInt(collectionId++);
+                            writer.writeInt(rng.nextInt(1, userCount() + 1));
+                            writer.writeText(collectionName);
+                            writer.endRow();
+                        }
+                    }
                 }
             }
+
+            return writer.getRowCount();
         }
     }
 
-    public static void loadSampleCollectionBooks() throws SQLException {
-        String query = "insert into collection_book(collection_id, book_id) values (?, ?)";
-
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-
-        Random rng = new Random();
+    public static long loadSampleCollectionBooks() throws SQLException {
+        try (Connection connection = POOL.getConnection();
+                RowWriter writer = openWriter(connection, "collection_book", "collection_book", "collection_id",
+                        "book_id")) {
+            Random rng = randomFor("collection_book");
+            ZipfSampler books = new ZipfSampler(bookCount(), BOOK_POPULARITY_SKEW);
+            int collectionIds = COLLECTIONS_PER_SCALE * SCALE;
+            int entryCount = COLLECTION_BOOKS_PER_SCALE * SCALE;
+            PairSet generated = new PairSet(entryCount);
 
-        int added = 0;
+            int added = 0;
 
-        while (added < 25000) {
-            int collectionId = rng.nextInt(1, 4001);
-            int bookId = rng.nextInt(1, 10001);
+            while (added < entryCount) {
+                int collectionId = rng.nextInt(1, collectionIds + 1);
+                int bookId = books.nextId(rng);
 
-            ps.setInt(1, collectionId);
-            ps.setInt(2, bookId);
+                if (!generated.add(collectionId, bookId)) {
+                    continue;
+                }
 
-            try {
-                ps.executeUpdate();
-                added += 1;
-            } catch (SQLException e) {
-                System.out.println("conflict, trying again");
+                writer.writeInt(collectionId);
+                writer.writeInt(bookId);
+                writer.endRow();
+                added++;
             }
+
+            return writer.getRowCount();
         }
     }
 }
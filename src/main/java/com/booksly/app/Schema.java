@@ -0,0 +1,195 @@
+package com.booksly.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings the database up to the latest schema version by running the
+ * migrations under resources/db/migration that haven't been applied yet, then
+ * checks that every index the app's queries rely on exists.
+ *
+ * Each migration runs in its own transaction together with the row recording
+ * it in schema_version, so a failed migration leaves nothing behind and is
+ * retried on the next start.
+ */
+class Schema {
+    // In order. A migration's version is the number after the V.
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__baseline.sql",
+            "V2__book_sort_keys.sql",
+            "V3__book_search.sql",
+            "V4__book_filter_indexes.sql",
+            "V5__hot_path_indexes.sql",
+            "V6__load_checkpoint.sql",
+            "V7__constraint_indexes.sql");
+
+    /**
+     * An index the app needs: one on the table whose leading columns are
+     * these, whatever it's called.
+     */
+    private record Index(String table, List<String> columns) {
+        @Override
+        public String toString() {
+            return this.table + " (" + String.join(", ", this.columns) + ")";
+        }
+    }
+
+    private static final List<Index> REQUIRED_INDEXES = List.of(
+            // Logins and signups look users up by name and email
+            new Index("users", List.of("username")),
+            new Index("users", List.of("email")),
+            new Index("follows", List.of("follower_id", "followee_id")),
+            new Index("follows", List.of("followee_id")),
+            new Index("rating", List.of("user_id", "book_id")),
+            new Index("rating", List.of("book_id")),
+            new Index("session", List.of("user_id")),
+            new Index("session", List.of("start_time")),
+            new Index("session", List.of("book_id")),
+            new Index("collection", List.of("user_id")),
+            new Index("collection_book", List.of("collection_id")),
+            new Index("book_genre", List.of("book_id")),
+            new Index("book_genre", List.of("genre_id")),
+            new Index("book_author", List.of("book_id")),
+            new Index("book_author", List.of("author_id")),
+            new Index("book_publisher", List.of("book_id")),
+            new Index("book_publisher", List.of("publisher_id")),
+            new Index("contributor", List.of("name")),
+            new Index("genre", List.of("name")),
+            // Book search filters and sort keys
+            new Index("book", List.of("title", "book_id")),
+            new Index("book", List.of("release_date", "book_id")),
+            new Index("book", List.of("primary_publisher", "book_id")),
+            new Index("book", List.of("primary_genre", "book_id")),
+            new Index("book_search", List.of("vector")),
+            new Index("book_search", List.of("document")));
+
+    private static final String SELECT_INDEXES = "select t.relname, array_agg(a.attname::text order by k.ord)\r\n" + //
+            "from pg_index i\r\n" + //
+            "inner join pg_class t on t.oid = i.indrelid\r\n" + //
+            "inner join pg_namespace n on n.oid = t.relnamespace\r\n" + //
+            "cross join lateral unnest(i.indkey) with ordinality k(attnum, ord)\r\n" + //
+            "inner join pg_attribute a on a.attrelid = t.oid and a.attnum = k.attnum\r\n" + //
+            "where n.nspname = current_schema()\r\n" + //
+            "group by i.indexrelid, t.relname";
+
+    /**
+     * Applies any pending migrations and verifies the required indexes.
+     *
+     * @param pool The pool to borrow a connection from
+     * @throws SQLException If a migration failed or an index is missing
+     */
+    public static void apply(ConnectionPool pool) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            migrate(connection);
+            verifyIndexes(connection);
+        }
+    }
+
+    private static void migrate(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+
+        statement.execute("create table if not exists schema_version (\r\n" + //
+                "version integer primary key,\r\n" + //
+                "script text not null,\r\n" + //
+                "applied_at timestamp not null default current_timestamp)");
+
+        connection.setAutoCommit(false);
+
+        PreparedStatement applied = connection.prepareStatement(
+                "select count(*) from schema_version where version = ?");
+        PreparedStatement record = connection.prepareStatement(
+                "insert into schema_version(version, script) values (?, ?)");
+
+        for (String script : MIGRATIONS) {
+            int version = getVersion(script);
+
+            try {
+                // Held until commit, so two instances starting together
+                // don't both run the same migration
+                statement.execute("lock table schema_version in exclusive mode");
+
+                applied.setInt(1, version);
+                ResultSet result = applied.executeQuery();
+                result.next();
+
+                if (result.getInt(1) == 0) {
+                    statement.execute(readScript(script));
+
+                    record.setInt(1, version);
+                    record.setString(2, script);
+                    record.executeUpdate();
+
+                    System.out.println("Applied schema migration " + script);
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Migration " + script + " failed: " + e.getLocalizedMessage(), e);
+            }
+        }
+
+        connection.setAutoCommit(true);
+    }
+
+    private static int getVersion(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static void verifyIndexes(Connection connection) throws SQLException {
+        Map<String, List<List<String>>> indexes = new HashMap<>();
+
+        ResultSet result = connection.createStatement().executeQuery(SELECT_INDEXES);
+
+        while (result.next()) {
+            Array columns = result.getArray(2);
+            indexes.computeIfAbsent(result.getString(1), table -> new ArrayList<>())
+                    .add(List.of((String[]) columns.getArray()));
+        }
+
+        List<Index> missing = new ArrayList<>();
+
+        for (Index required : REQUIRED_INDEXES) {
+            boolean found = false;
+
+            for (List<String> columns : indexes.getOrDefault(required.table(), List.of())) {
+                if (columns.size() >= required.columns().size()
+                        && columns.subList(0, required.columns().size()).equals(required.columns())) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                missing.add(required);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new SQLException("Missing indexes on " + missing);
+        }
+    }
+
+    private static String readScript(String name) throws SQLException {
+        try (InputStream in = Schema.class.getResourceAsStream("/db/migration/" + name)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found: " + name);
+            }
+
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Couldn't read migration script " + name, e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.booksly.app;
+
+import java.sql.SQLException;
+
+/**
+ * Drops the first rows written to it and passes the rest on, for resuming a
+ * load whose first rows are already in the table. The rows still have to be
+ * generated, since later rows can depend on the random draws and de-duplication
+ * of earlier ones, but they're never sent.
+ */
+class SkippingWriter implements RowWriter {
+    private final RowWriter writer;
+    private final long rowsToSkip;
+    private long rowsSkipped;
+
+    /**
+     * Wraps a writer.
+     *
+     * @param writer     The writer to pass rows on to
+     * @param rowsToSkip The number of rows to drop first
+     */
+    SkippingWriter(RowWriter writer, long rowsToSkip) {
+        this.writer = writer;
+        this.rowsToSkip = rowsToSkip;
+    }
+
+    private boolean skipping() {
+        return this.rowsSkipped < this.rowsToSkip;
+    }
+
+    @Override
+    public void writeInt(int value) throws SQLException {
+        if (!skipping()) {
+            this.writer.writeInt(value);
+        }
+    }
+
+    @Override
+    public void writeText(CharSequence value) throws SQLException {
+        if (!skipping()) {
+            this.writer.writeText(value);
+        }
+    }
+
+    @Override
+    public void writeDate(long epochMillis) throws SQLException {
+        if (!skipping()) {
+            this.writer.writeDate(epochMillis);
+        }
+    }
+
+    @Override
+    public void writeTimestamp(long epochMillis) throws SQLException {
+        if (!skipping()) {
+            this.writer.writeTimestamp(epochMillis);
+        }
+    }
+
+    @Override
+    public void endRow() throws SQLException {
+        if (skipping()) {
+            this.rowsSkipped++;
+        } else {
+            this.writer.endRow();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return this.rowsSkipped + this.writer.getRowCount();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        this.writer.close();
+    }
+}
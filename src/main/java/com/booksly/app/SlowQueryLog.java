@@ -0,0 +1,225 @@
+package com.booksly.app;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs statements that take longer than a threshold to execute, one JSON
+ * object per line in ./slow-queries.log, with the method that ran them, their
+ * parameters and how many rows they returned or changed. The most recent are
+ * also kept in memory, so they can be rerun under EXPLAIN (ANALYZE, BUFFERS)
+ * to see where the time went.
+ */
+class SlowQueryLog {
+    private static final String LOG_FILE = "./slow-queries.log";
+    private static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    private static final int RECENT_QUERIES = 20;
+    private static final String EXPLAIN = "explain (analyze, buffers) ";
+
+    private static volatile long THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    // Both guarded by the class lock
+    private static final Deque<SlowQuery> RECENT = new ArrayDeque<>();
+    private static PrintWriter LOG;
+
+    /**
+     * One slow execution.
+     *
+     * @param time       When it finished executing
+     * @param caller     The method that ran it
+     * @param sql        The statement's SQL text
+     * @param parameters Its parameters, in order
+     * @param nanos      How long the execute call took
+     * @param rows       How many rows it returned or changed, or -1 if unknown
+     */
+    record SlowQuery(Instant time, String caller, String sql, List<Object> parameters, long nanos, long rows) {
+        SlowQuery withRows(long rows) {
+            return new SlowQuery(time, caller, sql, parameters, nanos, rows);
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder();
+
+            json.append("{\"time\":\"").append(time).append('"');
+            json.append(",\"caller\":").append(quote(caller));
+            json.append(",\"millis\":").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+            json.append(",\"rows\":").append(rows);
+            json.append(",\"sql\":").append(quote(sql));
+            json.append(",\"parameters\":[");
+
+            for (int i = 0; i < parameters.size(); i++) {
+                Object parameter = parameters.get(i);
+
+                if (i > 0) {
+                    json.append(',');
+                }
+
+                if (parameter == null || parameter instanceof Number || parameter instanceof Boolean) {
+                    json.append(parameter);
+                } else {
+                    json.append(quote(parameter.toString()));
+                }
+            }
+
+            return json.append("]}").toString();
+        }
+    }
+
+    static void setThresholdMillis(long thresholdMillis) {
+        THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    static long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(THRESHOLD_NANOS);
+    }
+
+    static boolean isSlow(long nanos) {
+        return nanos >= THRESHOLD_NANOS;
+    }
+
+    /**
+     * Starts a record of a slow execution, tagged with the app method on the
+     * current thread's stack. Its rows are filled in once they're known.
+     *
+     * @param sql        The statement's SQL text
+     * @param parameters Its parameters, in order
+     * @param nanos      How long the execute call took
+     * @return The record, which isn't logged until passed to {@link #record}
+     */
+    static SlowQuery capture(String sql, List<Object> parameters, long nanos) {
+        return new SlowQuery(Instant.now(), Callers.current(), sql, new ArrayList<>(parameters), nanos, -1);
+    }
+
+    /**
+     * Logs a slow execution.
+     *
+     * @param query The execution
+     */
+    static synchronized void record(SlowQuery query) {
+        // Explaining a slow query runs it again, and that's not news
+        if (query.sql().startsWith(EXPLAIN)) {
+            return;
+        }
+
+        RECENT.addFirst(query);
+
+        if (RECENT.size() > RECENT_QUERIES) {
+            RECENT.removeLast();
+        }
+
+        try {
+            if (LOG == null) {
+                LOG = new PrintWriter(new FileWriter(LOG_FILE, true), true);
+            }
+
+            LOG.println(query.toJson());
+        } catch (IOException e) {
+            System.err.println("Couldn't write to " + LOG_FILE + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Gets the most recent slow executions.
+     *
+     * @return The executions, most recent first
+     */
+    static synchronized List<SlowQuery> getRecent() {
+        return new ArrayList<>(RECENT);
+    }
+
+    static synchronized void close() {
+        if (LOG != null) {
+            LOG.close();
+            LOG = null;
+        }
+    }
+
+    /**
+     * Reruns a slow execution under EXPLAIN (ANALYZE, BUFFERS) with the same
+     * parameters. It runs in a transaction that's rolled back, so explaining
+     * an insert or update doesn't change anything.
+     *
+     * @param pool  The pool to borrow a connection from
+     * @param query The execution to explain
+     * @return The plan, with actual times and buffer usage, one line per row
+     * @throws SQLException If there was an error with the query
+     */
+    static List<String> explain(ConnectionPool pool, SlowQuery query) throws SQLException {
+        List<String> plan = new ArrayList<>();
+
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                PreparedStatement ps = connection.prepareStatement(EXPLAIN + query.sql());
+
+                for (int i = 0; i < query.parameters().size(); i++) {
+                    Object parameter = query.parameters().get(i);
+
+                    if (parameter == null) {
+                        ps.setNull(i + 1, Types.OTHER);
+                    } else {
+                        ps.setObject(i + 1, parameter);
+                    }
+                }
+
+                ResultSet result = ps.executeQuery();
+
+                while (result.next()) {
+                    plan.add(result.getString(1));
+                }
+            } finally {
+                connection.rollback();
+            }
+        }
+
+        return plan;
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,430 @@
+package com.booksly.app;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the prepared statements of one physical connection by their SQL text.
+ * Reusing the same statement object lets the driver switch it to a named
+ * server-side statement once it has run enough times, so hot queries skip
+ * parsing and planning.
+ *
+ * Statements handed out by the registry go back to it when closed, and any
+ * that are still out when the connection returns to the pool are released
+ * then, along with their result sets. Every execution is timed, and the rows
+ * read from each result set counted, for {@link Metrics} and as a
+ * {@link QueryEvent}.
+ */
+class StatementRegistry {
+    private static final int MAX_STATEMENTS_PER_CONNECTION = 64;
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final AtomicInteger CACHED = new AtomicInteger();
+    private static final AtomicInteger OPEN_CURSORS = new AtomicInteger();
+
+    private final Connection connection;
+
+    // Access ordered, so iteration starts at the least recently used statement
+    private final LinkedHashMap<String, Entry> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Statements that couldn't be served from the cache, closed on release
+    private final List<Entry> uncached = new ArrayList<>();
+
+    StatementRegistry(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Gets a prepared statement for the given SQL, reusing the cached one if it
+     * isn't already in use.
+     *
+     * @param sql   The SQL text of the statement
+     * @param owner The connection the statement should report as its own
+     * @return A statement that returns to the registry when closed
+     * @throws SQLException If the statement couldn't be prepared
+     */
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        Entry entry = this.statements.get(sql);
+
+        if (entry != null && !entry.leased) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+
+            Entry prepared = new Entry(sql, this.connection.prepareStatement(sql), entry == null);
+
+            if (prepared.cached) {
+                this.statements.put(sql, prepared);
+                CACHED.incrementAndGet();
+                evictOverflow();
+            } else {
+                // The same SQL is still open further up the caller's stack
+                this.uncached.add(prepared);
+            }
+
+            entry = prepared;
+        }
+
+        entry.leased = true;
+        entry.generation++;
+
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new Handle(entry, owner));
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> leastRecentFirst = this.statements.values().iterator();
+
+        while (this.statements.size() > MAX_STATEMENTS_PER_CONNECTION && leastRecentFirst.hasNext()) {
+            Entry entry = leastRecentFirst.next();
+
+            if (!entry.leased) {
+                leastRecentFirst.remove();
+                CACHED.decrementAndGet();
+                EVICTIONS.increment();
+                entry.closeStatement();
+            }
+        }
+    }
+
+    private void release(Entry entry) throws SQLException {
+        if (!entry.leased) {
+            return;
+        }
+
+        entry.leased = false;
+        entry.closeCursor();
+
+        if (entry.cached) {
+            entry.statement.clearParameters();
+        } else {
+            this.uncached.remove(entry);
+            entry.closeStatement();
+        }
+    }
+
+    /**
+     * Releases every statement still handed out, closing their result sets.
+     * Called when the connection goes back to the pool.
+     */
+    void releaseAll() {
+        for (Entry entry : new ArrayList<>(this.statements.values())) {
+            try {
+                release(entry);
+            } catch (SQLException e) {
+                // A broken statement is dropped so the next caller re-prepares it
+                this.statements.remove(entry.sql);
+                CACHED.decrementAndGet();
+                entry.closeStatement();
+            }
+        }
+
+        for (Entry entry : new ArrayList<>(this.uncached)) {
+            entry.leased = false;
+            entry.closeCursor();
+            entry.closeStatement();
+        }
+
+        this.uncached.clear();
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is
+     * closed.
+     */
+    void closeAll() {
+        releaseAll();
+
+        for (Entry entry : this.statements.values()) {
+            entry.closeStatement();
+        }
+
+        CACHED.addAndGet(-this.statements.size());
+        this.statements.clear();
+    }
+
+    /**
+     * Takes a snapshot of the statement cache metrics across all connections.
+     *
+     * @return The current statement statistics
+     */
+    static Stats getStats() {
+        return new Stats(HITS.sum(), MISSES.sum(), CACHED.get(), EVICTIONS.sum(), OPEN_CURSORS.get());
+    }
+
+    record Stats(long hits, long misses, int cached, long evictions, int openCursors) {
+        double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("statements: %d cached, %d evicted%n" +
+                    "cache hits: %d of %d (%.1f%%)%n" +
+                    "open cursors: %d",
+                    cached, evictions, hits, hits + misses, hitRate() * 100, openCursors);
+        }
+    }
+
+    private static class Entry {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final boolean cached;
+        private boolean leased;
+        private int generation;
+        private Cursor cursor;
+
+        private Entry(String sql, PreparedStatement statement, boolean cached) {
+            this.sql = sql;
+            this.statement = statement;
+            this.cached = cached;
+        }
+
+        private void closeCursor() {
+            if (this.cursor != null) {
+                this.cursor.close();
+                this.cursor = null;
+            }
+        }
+
+        private void closeStatement() {
+            try {
+                this.statement.close();
+            } catch (SQLException e) {
+                // Nothing more can be done with it
+            }
+        }
+    }
+
+    /**
+     * The borrower's view of a registry statement. Closing it hands the
+     * statement back instead of closing it.
+     */
+    private class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection owner;
+        private final int generation;
+
+        // Kept so slow executions can be logged and explained with them
+        private final List<Object> parameters = new ArrayList<>();
+
+        private boolean closed;
+
+        private Handle(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+            this.generation = entry.generation;
+        }
+
+        private void setParameter(int index, Object value) {
+            while (this.parameters.size() < index) {
+                this.parameters.add(null);
+            }
+
+            this.parameters.set(index - 1, value);
+        }
+
+        // A handle stays usable until it's closed or the statement is released
+        // and handed to someone else
+        private boolean isCurrent() {
+            return !this.closed && this.entry.leased && this.entry.generation == this.generation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (isCurrent()) {
+                        release(this.entry);
+                    }
+                    this.closed = true;
+                    return null;
+                case "isClosed":
+                    return !isCurrent();
+                case "getConnection":
+                    return this.owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return this.entry.statement.toString();
+                default:
+                    break;
+            }
+
+            if (!isCurrent()) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            String name = method.getName();
+            boolean executing = name.startsWith("execute");
+
+            // Running the statement again implicitly closes its last result set
+            if (executing) {
+                this.entry.closeCursor();
+                Roundtrips.increment();
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                setParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                this.parameters.clear();
+            }
+
+            Object result;
+            QueryEvent event = executing ? new QueryEvent() : null;
+            long startTime = System.nanoTime();
+            long elapsed = 0;
+
+            if (event != null) {
+                event.begin();
+            }
+
+            try {
+                result = method.invoke(this.entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (executing) {
+                    elapsed = System.nanoTime() - startTime;
+                    event.end();
+                    Metrics.recordStatement(this.entry.sql, elapsed);
+                }
+            }
+
+            SlowQueryLog.SlowQuery slow = executing && SlowQueryLog.isSlow(elapsed)
+                    ? SlowQueryLog.capture(this.entry.sql, this.parameters, elapsed)
+                    : null;
+
+            // Only tagged when a recording wants the event
+            if (event != null && event.shouldCommit()) {
+                event.sql = this.entry.sql;
+                event.caller = slow != null ? slow.caller() : Callers.current();
+            } else {
+                event = null;
+            }
+
+            if (result instanceof ResultSet resultSet) {
+                if (this.entry.cursor != null && this.entry.cursor.resultSet == resultSet) {
+                    return this.entry.cursor.proxy;
+                }
+
+                // The statement tracks one cursor at a time, so the one it's
+                // replacing is finished now rather than never counted
+                this.entry.closeCursor();
+
+                // A query is logged and its event committed once its rows
+                // have been read
+                this.entry.cursor = new Cursor(this.entry.sql, resultSet, (PreparedStatement) proxy, slow, event);
+                return this.entry.cursor.proxy;
+            }
+
+            long count = result instanceof Number number ? number.longValue() : -1;
+
+            if (slow != null) {
+                SlowQueryLog.record(slow.withRows(count));
+            }
+
+            if (event != null) {
+                event.rows = count;
+                event.commit();
+            }
+
+            return result;
+        }
+    }
+
+    private static class Cursor implements InvocationHandler {
+        private final String sql;
+        private final ResultSet resultSet;
+        private final PreparedStatement statement;
+        private final ResultSet proxy;
+        private final SlowQueryLog.SlowQuery slow;
+        private final QueryEvent event;
+        private long rows;
+        private boolean closed;
+
+        private Cursor(String sql, ResultSet resultSet, PreparedStatement statement, SlowQueryLog.SlowQuery slow,
+                QueryEvent event) {
+            this.sql = sql;
+            this.resultSet = resultSet;
+            this.slow = slow;
+            this.event = event;
+            this.statement = statement;
+            this.proxy = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, this);
+
+            OPEN_CURSORS.incrementAndGet();
+        }
+
+        private void close() {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+            OPEN_CURSORS.decrementAndGet();
+            Metrics.recordRows(this.sql, this.rows);
+
+            if (this.slow != null) {
+                SlowQueryLog.record(this.slow.withRows(this.rows));
+            }
+
+            if (this.event != null) {
+                this.event.rows = this.rows;
+                this.event.commit();
+            }
+
+            try {
+                this.resultSet.close();
+            } catch (SQLException e) {
+                // Closing the statement cleans it up regardless
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "getStatement":
+                    return this.statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "next":
+                    boolean hasRow = this.resultSet.next();
+
+                    if (hasRow) {
+                        this.rows++;
+                    }
+
+                    return hasRow;
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(this.resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.booksly.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for opening the SSH tunnel to the database host,
+ * from the start of the SSH handshake to the port forward being set up.
+ */
+@Name("booksly.Tunnel")
+@Label("SSH Tunnel Connect")
+@Category("Booksly")
+@Description("Opening the SSH session and port forward to the database")
+class TunnelEvent extends Event {
+    @Label("Host")
+    String host;
+
+    @Label("Local Port")
+    @Description("The forwarded port, or 0 if the tunnel failed")
+    int localPort;
+
+    @Label("Reconnect")
+    @Description("Whether the app already had a session")
+    boolean reconnect;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -2,7 +2,6 @@ package com.booksly.app;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -13,40 +12,62 @@ import java.util.*;
 
 public class User {
     private int userId;
-    private static Connection CONNECTION;
+    private UserRecord record;
 
-    public static void setConnection(Connection connection) {
-        CONNECTION = connection;
+    private static ConnectionPool POOL;
+    private static AccessLog ACCESS_LOG;
+
+    private static final int CACHE_SIZE = 1024;
+    private static final UserCache CACHE = new UserCache(CACHE_SIZE);
+
+    private static final String SELECT_USER = "select user_id, username, email, first_name, last_name, " +
+            "password_hash, password_salt, creation_date, last_access_date from users where ";
+
+    public static void setConnectionPool(ConnectionPool pool) {
+        POOL = pool;
+        ACCESS_LOG = new AccessLog(pool);
     }
 
-    public static String hashPassword(String password, String salt) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            StringBuilder salted = new StringBuilder();
-            for(int i = 0;i<password.length();i++) {
-                char c = salt.charAt((i+5)%salt.length());
-                salted.append(c);
-                salted.append(password.charAt(i));
-            }
-            byte[] encodedhash = digest.digest(
-                    salted.toString().getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(encodedhash);
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println(e.getLocalizedMessage());
-            return null;
+    /**
+     * Waits for queued access writes to finish. Called before the pool is
+     * closed.
+     */
+    public static void closeAccessLog() {
+        if (ACCESS_LOG != null) {
+            ACCESS_LOG.close();
         }
     }
 
-    private static String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder(2 * hash.length);
-        for (int i = 0; i < hash.length; i++) {
-            String hex = Integer.toHexString(0xff & hash[i]);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+    /**
+     * Hashes a password with a salt.
+     *
+     * @param password The password
+     * @param salt     The salt
+     * @return The hash, as hex
+     */
+    public static String hashPassword(String password, String salt) {
+        return PasswordHasher.hash(password, salt);
+    }
+
+    /**
+     * Checks a password against a user's stored salt and hash. The hashes are
+     * compared in constant time, so response times don't reveal how much of a
+     * guess was right.
+     *
+     * @param record   The user's row
+     * @param password The password to check
+     * @return Whether the password is correct
+     */
+    public static boolean isPasswordCorrect(UserRecord record, String password) {
+        // Unsalted passwords can't be checked until they're rehashed
+        if (record.passwordSalt() == null || record.passwordHash() == null) {
+            return false;
         }
-        return hexString.toString();
+
+        String passwordHash = hashPassword(password, record.passwordSalt());
+
+        return passwordHash != null && MessageDigest.isEqual(passwordHash.getBytes(StandardCharsets.UTF_8),
+                record.passwordHash().getBytes(StandardCharsets.UTF_8));
     }
 
     public static String generateSalt(){
@@ -55,153 +76,156 @@ public class User {
         return salt;
     }
 
+    /**
+     * Gets the id of the user with the given username.
+     *
+     * @param username The username to look up
+     * @return The user's id, or -1 if no user has that username
+     * @throws SQLException If there was an error with the query
+     */
     public static int getUserId(String username) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select user_id from users where username = ?");
-
-        ps.setString(1, username);
-
-        ResultSet result = ps.executeQuery();
+        UserRecord record = findByUsername(username);
 
-        result.next();
-
-        return result.getInt(1);
+        return record == null ? -1 : record.userId();
     }
 
     public static boolean doesUserExist(String username) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select count(*) from users where username = ?");
-
-        ps.setString(1, username);
+        return findByUsername(username) != null;
+    }
 
-        ResultSet result = ps.executeQuery();
+    public static User getUserByEmail(String email) throws SQLException {
+        UserRecord record = findByEmail(email);
 
-        result.next();
+        return record == null ? null : new User(record);
+    }
 
-        return result.getInt(1) == 1;
+    public static boolean isUsernameTaken(String username) throws SQLException {
+        return findByUsername(username) != null;
     }
 
-    public static User getUserByEmail(String email) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select user_id from users where email = ?");
+    public static boolean isEmailTaken(String email) throws SQLException {
+        return findByEmail(email) != null;
+    }
 
-        ps.setString(1, email);
+    /**
+     * Forgets every cached user row. Called when a new session starts.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
 
-        ResultSet result = ps.executeQuery();
+    public static UserRecord findById(int userId) throws SQLException {
+        UserRecord record = CACHE.get(userId);
 
-        result.next();
+        return record != null ? record : fetchRecord("user_id", userId);
+    }
 
-        int userId = result.getInt(1);
+    public static UserRecord findByUsername(String username) throws SQLException {
+        UserRecord record = CACHE.getByUsername(username);
 
-        return new User(userId);
+        return record != null ? record : fetchRecord("username", username);
     }
 
-    public static boolean isUsernameTaken(String username) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select count(*) from users where username = ?");
-
-        ps.setString(1, username);
+    public static UserRecord findByEmail(String email) throws SQLException {
+        UserRecord record = CACHE.getByEmail(email);
 
-        ResultSet result = ps.executeQuery();
+        return record != null ? record : fetchRecord("email", email);
+    }
 
-        result.next();
+    /**
+     * Loads a full user row by one of its unique columns and caches it.
+     *
+     * @param column The unique column to match on
+     * @param key    The value of that column
+     * @return The user's row, or null if there isn't one
+     * @throws SQLException If there was an error with the query
+     */
+    private static UserRecord fetchRecord(String column, Object key) throws SQLException {
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(SELECT_USER + column + " = ?");
 
-        return result.getInt(1) == 1;
-    }
+            ps.setObject(1, key);
 
-    public static boolean isEmailTaken(String email) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select count(*) from users where email = ?");
+            ResultSet result = ps.executeQuery();
 
-        ps.setString(1, email);
+            if (!result.next()) {
+                return null;
+            }
 
-        ResultSet result = ps.executeQuery();
+            UserRecord record = new UserRecord(result.getInt(1), result.getString(2), result.getString(3),
+                    result.getString(4), result.getString(5), result.getString(6), result.getString(7),
+                    result.getTimestamp(8), result.getTimestamp(9));
 
-        result.next();
+            CACHE.put(record);
 
-        return result.getInt(1) == 1;
+            return record;
+        }
     }
 
     public User(int userId) {
         this.userId = userId;
     }
 
+    public User(UserRecord record) {
+        this.userId = record.userId();
+        this.record = record;
+    }
+
     public int getUserId() {
         return this.userId;
     }
 
-    public String getUsername() throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select username from users where user_id = ?");
-
-        ps.setInt(1, this.userId);
+    /**
+     * Gets this user's full row, loading it on first use.
+     *
+     * @return The user's row
+     * @throws SQLException If the user doesn't exist or the query failed
+     */
+    public UserRecord getRecord() throws SQLException {
+        if (this.record == null) {
+            this.record = findById(this.userId);
 
-        ResultSet result = ps.executeQuery();
+            if (this.record == null) {
+                throw new SQLException("User not found: " + this.userId);
+            }
+        }
 
-        result.next();
+        return this.record;
+    }
 
-        return result.getString(1);
+    public String getUsername() throws SQLException {
+        return getRecord().username();
     }
 
     public String getEmail() throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select email from users where user_id = ?");
-
-        ps.setInt(1, this.userId);
-
-        ResultSet result = ps.executeQuery();
-
-        result.next();
-
-        return result.getString(1);
+        return getRecord().email();
     }
 
     public String getFirstName() throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select first_name from users where user_id = ?");
-
-        ps.setInt(1, this.userId);
-
-        ResultSet result = ps.executeQuery();
-
-        result.next();
-
-        return result.getString(1);
+        return getRecord().firstName();
     }
 
     public String getLastName() throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select last_name from users where user_id = ?");
-
-        ps.setInt(1, this.userId);
-
-        ResultSet result = ps.executeQuery();
-
-        result.next();
-
-        return result.getString(1);
+        return getRecord().lastName();
     }
 
     public String getPasswordHash() throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement("select password_hash from users where user_id = ?");
-
-        ps.setInt(1, this.userId);
-
-        ResultSet result = ps.executeQuery();
-
-        result.next();
-
-        return result.getString(1);
+        return getRecord().passwordHash();
     }
 
-    public void addAccess() throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into user_access(access_id, user_id, access_time) values (DEFAULT, ?, ?)");
-
+    /**
+     * Records that this user accessed the app now. The row is written in the
+     * background, see {@link AccessLog}.
+     */
+    public void addAccess() {
         Timestamp now = Timestamp.from(Instant.now());
 
-        ps.setInt(1, this.userId);
-        ps.setTimestamp(2, now);
-
-        ps.executeUpdate();
-
-        ps = CONNECTION.prepareStatement("update users set last_access_date = ? where user_id = ?");
+        ACCESS_LOG.record(this.userId, now);
 
-        ps.setTimestamp(1, now);
-        ps.setInt(2, this.userId);
-
-        ps.executeUpdate();
+        if (this.record != null) {
+            this.record = this.record.withLastAccessDate(now);
+            CACHE.refresh(this.record);
+        }
     }
 
     /**
@@ -214,17 +238,19 @@ public class User {
     public boolean isFollowing(String username) throws SQLException {
         int followeeId = User.getUserId(username);
 
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("select count(*) from follows where follower_id = ? and followee_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("select count(*) from follows where follower_id = ? and followee_id = ?");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, followeeId);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, followeeId);
 
-        ResultSet result = ps.executeQuery();
+            ResultSet result = ps.executeQuery();
 
-        result.next();
+            result.next();
 
-        return result.getInt(1) == 1;
+            return result.getInt(1) == 1;
+        }
     }
 
     /**
@@ -236,13 +262,15 @@ public class User {
     public void followUser(String username) throws SQLException {
         int followeeId = User.getUserId(username);
 
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into follows(follower_id, followee_id) values (?, ?)");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("insert into follows(follower_id, followee_id) values (?, ?)");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, followeeId);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, followeeId);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     /**
@@ -254,13 +282,15 @@ public class User {
     public void unfollowUser(String username) throws SQLException {
         int followeeId = User.getUserId(username);
 
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("delete from follows where follower_id = ? and followee_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("delete from follows where follower_id = ? and followee_id = ?");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, followeeId);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, followeeId);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     /**
@@ -271,17 +301,19 @@ public class User {
      * @return Whether the user has rated the book
      */
     public boolean hasRatedBook(int bookId) throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("select count(*) from rating where user_id = ? and book_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("select count(*) from rating where user_id = ? and book_id = ?");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, bookId);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, bookId);
 
-        ResultSet result = ps.executeQuery();
+            ResultSet result = ps.executeQuery();
 
-        result.next();
+            result.next();
 
-        return result.getInt(1) == 1;
+            return result.getInt(1) == 1;
+        }
     }
 
     /**
@@ -292,15 +324,16 @@ public class User {
      * @param rating The rating the user is giving the book
      */
     public void rateBook(int bookId, int rating) throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("insert into rating(user_id, book_id, rating) values (?, ?, ?)");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("insert into rating(user_id, book_id, rating) values (?, ?, ?)");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, bookId);
-        ps.setInt(3, rating);
-
-        ps.executeUpdate();
+            ps.setInt(1, this.userId);
+            ps.setInt(2, bookId);
+            ps.setInt(3, rating);
 
+            ps.executeUpdate();
+        }
     }
 
     /**
@@ -311,14 +344,16 @@ public class User {
      * @param rating The rating the user is giving the book
      */
     public void updateBookRating(int bookId, int rating) throws SQLException {
-        PreparedStatement ps = CONNECTION
-                .prepareStatement("update rating set rating = ? where user_id = ? and book_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection
+                    .prepareStatement("update rating set rating = ? where user_id = ? and book_id = ?");
 
-        ps.setInt(1, rating);
-        ps.setInt(2, this.userId);
-        ps.setInt(3, bookId);
+            ps.setInt(1, rating);
+            ps.setInt(2, this.userId);
+            ps.setInt(3, bookId);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     /**
@@ -333,45 +368,53 @@ public class User {
      */
     public void readBook(int bookId, int startPage, int endPage, Timestamp startTime, Timestamp endTime)
             throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "insert into session(session_id, user_id, book_id, start_page, end_page, start_time, end_time) values (DEFAULT, ?, ?, ?, ?, ?, ?)");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into session(session_id, user_id, book_id, start_page, end_page, start_time, end_time) values (DEFAULT, ?, ?, ?, ?, ?, ?)");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, bookId);
-        ps.setInt(3, startPage);
-        ps.setInt(4, endPage);
-        ps.setTimestamp(5, startTime);
-        ps.setTimestamp(6, endTime);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, bookId);
+            ps.setInt(3, startPage);
+            ps.setInt(4, endPage);
+            ps.setTimestamp(5, startTime);
+            ps.setTimestamp(6, endTime);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     // duplicate collection names allowed
     public void createCollection(String name) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "insert into collection(collection_id, user_id, name) values (DEFAULT, ?, ?)");
-        ps.setInt(1, this.userId);
-        ps.setString(2, name);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into collection(collection_id, user_id, name) values (DEFAULT, ?, ?)");
+            ps.setInt(1, this.userId);
+            ps.setString(2, name);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     public void addBookToCollection(int collectionId, int bookId) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "insert into collection_book(collection_id, book_id) values (?, ?)");
-        ps.setInt(1, collectionId);
-        ps.setInt(2, bookId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into collection_book(collection_id, book_id) values (?, ?)");
+            ps.setInt(1, collectionId);
+            ps.setInt(2, bookId);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     public void removeBookFromCollection(int collectionId, int bookId) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "delete from collection_book where collection_id = ? and book_id = ?");
-        ps.setInt(1, collectionId);
-        ps.setInt(2, bookId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "delete from collection_book where collection_id = ? and book_id = ?");
+            ps.setInt(1, collectionId);
+            ps.setInt(2, bookId);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     /**
@@ -387,55 +430,63 @@ public class User {
                 "group by c.collection_id, c.name\r\n" + //
                 "order by c.name";
 
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
 
-        ps.setInt(1, this.userId);
+            ps.setInt(1, this.userId);
 
-        ResultSet result = ps.executeQuery();
+            ResultSet result = ps.executeQuery();
 
-        while (result.next()) {
-            int collectionId = result.getInt(1);
-            String collectionName = result.getString(2);
+            while (result.next()) {
+                int collectionId = result.getInt(1);
+                String collectionName = result.getString(2);
 
-            System.out.println(collectionName + " [" + collectionId + "]");
-            System.out.println("- Number of books: " + result.getInt(3));
-            System.out.println("- Total pages: " + result.getInt(4));
+                System.out.println(collectionName + " [" + collectionId + "]");
+                System.out.println("- Number of books: " + result.getInt(3));
+                System.out.println("- Total pages: " + result.getInt(4));
+            }
         }
     }
 
     public boolean collectionExists(int collectionId) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "select count(*) from collection where user_id = ? and collection_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "select count(*) from collection where user_id = ? and collection_id = ?");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, collectionId);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, collectionId);
 
-        ResultSet result = ps.executeQuery();
+            ResultSet result = ps.executeQuery();
 
-        result.next();
+            result.next();
 
-        return result.getInt(1) == 1;
+            return result.getInt(1) == 1;
+        }
     }
 
     public void deleteCollection(int collectionId) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "delete from collection where user_id = ? and collection_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "delete from collection where user_id = ? and collection_id = ?");
 
-        ps.setInt(1, this.userId);
-        ps.setInt(2, collectionId);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, collectionId);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     public void renameCollection(int collectionId, String name) throws SQLException {
-        PreparedStatement ps = CONNECTION.prepareStatement(
-                "update collection set name = ? where user_id = ? and collection_id = ?");
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "update collection set name = ? where user_id = ? and collection_id = ?");
 
-        ps.setInt(3, collectionId);
-        ps.setInt(2, this.userId);
-        ps.setString(1, name);
+            ps.setInt(3, collectionId);
+            ps.setInt(2, this.userId);
+            ps.setString(1, name);
 
-        ps.executeUpdate();
+            ps.executeUpdate();
+        }
     }
 
     /**
@@ -446,12 +497,14 @@ public class User {
      */
     public int getCollectionCount() throws SQLException {
         String query = "select count(*) from collection where user_id = ?";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.userId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, this.userId);
 
-        ResultSet result = ps.executeQuery();
-        result.next();
-        return result.getInt(1);
+            ResultSet result = ps.executeQuery();
+            result.next();
+            return result.getInt(1);
+        }
     }
 
     /**
@@ -462,12 +515,14 @@ public class User {
      */
     public int getFollowerCount() throws SQLException {
         String query = "select count(*) from follows where followee_id = ?";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.userId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, this.userId);
 
-        ResultSet result = ps.executeQuery();
-        result.next();
-        return result.getInt(1);
+            ResultSet result = ps.executeQuery();
+            result.next();
+            return result.getInt(1);
+        }
     }
 
     /**
@@ -478,12 +533,14 @@ public class User {
      */
     public int getFollowingCount() throws SQLException {
         String query = "select count(*) from follows where follower_id = ?";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.userId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, this.userId);
 
-        ResultSet result = ps.executeQuery();
-        result.next();
-        return result.getInt(1);
+            ResultSet result = ps.executeQuery();
+            result.next();
+            return result.getInt(1);
+        }
     }
 
     public void displayTopRatings() throws SQLException {
@@ -493,19 +550,21 @@ public class User {
                 "where r.user_id = ?\r\n" + //
                 "order by r.rating desc, b.title\r\n" + //
                 "limit 10";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, userId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, userId);
 
-        System.out.println("\nTop ratings:");
+            System.out.println("\nTop ratings:");
 
-        ResultSet result = ps.executeQuery();
-        int index = 1;
+            ResultSet result = ps.executeQuery();
+            int index = 1;
 
-        while (result.next()) {
-            String title = result.getString(1);
-            int rating = result.getInt(2);
-            System.out.println(index + ") " + title + ": " + rating + " stars");
-            index++;
+            while (result.next()) {
+                String title = result.getString(1);
+                int rating = result.getInt(2);
+                System.out.println(index + ") " + title + ": " + rating + " stars");
+                index++;
+            }
         }
     }
 
@@ -517,19 +576,21 @@ public class User {
                 "group by b.book_id, b.title\r\n" + //
                 "order by read_time desc, title\r\n" + //
                 "limit 10";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, userId);
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, userId);
 
-        System.out.println("\nTop read times:");
+            System.out.println("\nTop read times:");
 
-        ResultSet result = ps.executeQuery();
-        int index = 1;
+            ResultSet result = ps.executeQuery();
+            int index = 1;
 
-        while (result.next()) {
-            String title = result.getString(1);
-            int readTime = result.getInt(2);
-            System.out.println(index + ") " + title + ": " + readTime + " seconds");
-            index++;
+            while (result.next()) {
+                String title = result.getString(1);
+                int readTime = result.getInt(2);
+                System.out.println(index + ") " + title + ": " + readTime + " seconds");
+                index++;
+            }
         }
     }
 
@@ -548,37 +609,39 @@ public class User {
                 "    on rt.book_id = st.book_id)\r\n" + //
                 "order by rt.rating desc nulls last, st.read_time desc nulls last, title\r\n" + //
                 "limit 10";
-        PreparedStatement ps = CONNECTION.prepareStatement(query);
-        ps.setInt(1, this.userId);
-        ps.setInt(2, this.userId);
-
-        System.out.println("\nTop books by rating and read time");
-
-        ResultSet result = ps.executeQuery();
-        int index = 1;
-
-        while (result.next()) {
-            String title = result.getString(1);
-            String rating = Integer.toString(result.getInt(2));
-            if (rating.equals("0")) {
-                rating = "none";
-            } else {
-                rating += " stars";
-            }
-            String readTime = Integer.toString(result.getInt(3));
-            if (readTime.equals("0")) {
-                readTime = "none";
-            } else {
-                readTime += " seconds";
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setInt(1, this.userId);
+            ps.setInt(2, this.userId);
+
+            System.out.println("\nTop books by rating and read time");
+
+            ResultSet result = ps.executeQuery();
+            int index = 1;
+
+            while (result.next()) {
+                String title = result.getString(1);
+                String rating = Integer.toString(result.getInt(2));
+                if (rating.equals("0")) {
+                    rating = "none";
+                } else {
+                    rating += " stars";
+                }
+                String readTime = Integer.toString(result.getInt(3));
+                if (readTime.equals("0")) {
+                    readTime = "none";
+                } else {
+                    readTime += " seconds";
+                }
+                System.out.println(index + ") " + title + ": " + rating + ", " + readTime);
+                index++;
             }
-            System.out.println(index + ") " + title + ": " + rating + ", " + readTime);
-            index++;
         }
     }
 
     public ArrayList<String> getPopularBooksFollowers(){
-        try {
-            PreparedStatement ps = CONNECTION.prepareStatement(
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
                     "select title from book b join session s on b.book_id = s.book_id " +
                             "where s.user_id in " +
                             "(select follower_id from follows where followee_id = ?) " +
@@ -601,9 +664,16 @@ public class User {
         return null;
     }
 
-    public ArrayList<String> recommendBooks(){
-        try {
-            PreparedStatement ps = CONNECTION.prepareStatement(
+    /**
+     * Recommends books based on what this user and readers like them have
+     * read.
+     *
+     * @return The recommended titles, each with its score
+     * @throws SQLException If there was an error with the query
+     */
+    public ArrayList<String> recommendBooks() throws SQLException {
+        try (Connection connection = POOL.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
                     "with my_books as (select s.book_id\n" +
                             "                  from session s\n" +
                             "                  where s.user_id = ?),\n" +
@@ -681,11 +751,6 @@ public class User {
                 //System.out.println(result.get);
             }
             return res;
-
-        } catch (SQLException e) {
-            System.err.println(e.getLocalizedMessage());
-            System.exit(1);
         }
-        return null;
     }
 }
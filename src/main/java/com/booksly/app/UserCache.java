@@ -0,0 +1,76 @@
+package com.booksly.app;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded identity map of user rows, indexed by id, username and email.
+ * Usernames, emails and names never change once a user signs up, so entries
+ * only need refreshing when the app itself writes to the row.
+ */
+class UserCache {
+    private final int capacity;
+
+    private final LinkedHashMap<Integer, UserRecord> byId;
+    private final Map<String, Integer> idsByUsername = new HashMap<>();
+    private final Map<String, Integer> idsByEmail = new HashMap<>();
+
+    UserCache(int capacity) {
+        this.capacity = capacity;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    synchronized UserRecord get(int userId) {
+        return this.byId.get(userId);
+    }
+
+    synchronized UserRecord getByUsername(String username) {
+        Integer userId = this.idsByUsername.get(username);
+        return userId == null ? null : this.byId.get(userId);
+    }
+
+    synchronized UserRecord getByEmail(String email) {
+        Integer userId = this.idsByEmail.get(email);
+        return userId == null ? null : this.byId.get(userId);
+    }
+
+    synchronized void put(UserRecord record) {
+        UserRecord previous = this.byId.put(record.userId(), record);
+
+        if (previous != null) {
+            unindex(previous);
+        }
+
+        this.idsByUsername.put(record.username(), record.userId());
+        this.idsByEmail.put(record.email(), record.userId());
+
+        if (this.byId.size() > this.capacity) {
+            UserRecord eldest = this.byId.values().iterator().next();
+            this.byId.remove(eldest.userId());
+            unindex(eldest);
+        }
+    }
+
+    /**
+     * Replaces the cached row of a user, if there is one.
+     *
+     * @param record The updated row
+     */
+    synchronized void refresh(UserRecord record) {
+        if (this.byId.containsKey(record.userId())) {
+            put(record);
+        }
+    }
+
+    synchronized void clear() {
+        this.byId.clear();
+        this.idsByUsername.clear();
+        this.idsByEmail.clear();
+    }
+
+    private void unindex(UserRecord record) {
+        this.idsByUsername.remove(record.username(), record.userId());
+        this.idsByEmail.remove(record.email(), record.userId());
+    }
+}
@@ -0,0 +1,15 @@
+package com.booksly.app;
+
+import java.sql.Timestamp;
+
+/**
+ * A full row of the users table, loaded in a single query.
+ */
+public record UserRecord(int userId, String username, String email, String firstName, String lastName,
+        String passwordHash, String passwordSalt, Timestamp creationDate, Timestamp lastAccessDate) {
+
+    public UserRecord withLastAccessDate(Timestamp lastAccessDate) {
+        return new UserRecord(userId, username, email, firstName, lastName, passwordHash, passwordSalt,
+                creationDate, lastAccessDate);
+    }
+}
@@ -0,0 +1,388 @@
+package com.booksly.app;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Replays a script of commands through the app against a real database and
+ * reports each command's latency percentiles and how many database roundtrips
+ * it took, both to the console and to a CSV file, so runs can be compared
+ * before and after a change.
+ *
+ * A script has one command per line, written as it would be typed at the
+ * prompt, followed by the answers to any prompts it asks. Blank lines between
+ * commands and lines starting with # are skipped, so a command that only
+ * sometimes prompts, like a book search with more than one page, can be
+ * followed by a blank answer either way. A collection id written as
+ * $collection is replaced with the newest collection the logged-in user has
+ * created since logging in, so a script can create a collection and add to it
+ * without knowing its id. Commands using it before there is one are skipped.
+ * Without a script a synthetic one is generated from a weighted mix of the
+ * common commands, logging in as users from the sample dataset.
+ *
+ * Usage: WorkloadReplay --url URL [--user USER] [--password PASSWORD]
+ * [--script FILE | --commands N] [--warmup N] [--out FILE] [--load]
+ * [--scale N] [--seed N]
+ */
+public class WorkloadReplay {
+    private static final int DEFAULT_COMMANDS = 10_000;
+    private static final int DEFAULT_WARMUP = 500;
+
+    private static final String[] PROFILE_SORTS = { "ratings", "read", "both" };
+
+    private static final String COLLECTION_PLACEHOLDER = "$collection";
+    private static final String REPLAY_COLLECTION = "replay";
+
+    private static class CommandStats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long roundtrips;
+
+        void record(long nanos, long roundtrips) {
+            this.latencies.record(nanos);
+            this.roundtrips += roundtrips;
+        }
+    }
+
+    private final Map<String, CommandStats> stats = new TreeMap<>();
+    private int skipped;
+
+    /**
+     * Runs every command in a script, timing the ones after the warmup.
+     * Output from the commands is discarded, but errors are still printed.
+     * Looking up the id $collection stands for isn't timed, and commands
+     * using it are skipped until the logged-in user has created a collection.
+     *
+     * @param script The script
+     * @param pool   The pool to run the commands with
+     * @param warmup How many commands to run before timing starts
+     * @return Whether the app started
+     */
+    boolean replay(String script, ConnectionPool pool, int warmup) {
+        Scanner input = new Scanner(script);
+        App app = new App(input);
+
+        if (!app.start(pool)) {
+            return false;
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            int commands = 0;
+            User user = null;
+            String collectionId = null;
+
+            while (input.hasNextLine()) {
+                String line = input.nextLine().strip();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] args = line.split("\\s+");
+                String command;
+
+                if (!substituteCollection(args, collectionId)) {
+                    this.skipped++;
+                    continue;
+                }
+
+                try {
+                    command = App.commandName(args);
+                } catch (ArrayIndexOutOfBoundsException e) {
+                    command = null;
+                }
+
+                long roundtrips = Roundtrips.get();
+                long startTime = System.nanoTime();
+
+                app.executeCommand(args);
+
+                long elapsed = System.nanoTime() - startTime;
+
+                if (commands++ >= warmup) {
+                    this.stats.computeIfAbsent(command == null ? "unknown" : command, name -> new CommandStats())
+                            .record(elapsed, Roundtrips.get() - roundtrips);
+                }
+
+                // A failed login leaves the previous user logged in, so the
+                // app is asked who it is rather than trusting the script
+                if (app.getUser() != user) {
+                    user = app.getUser();
+                    collectionId = null;
+                }
+
+                if ("collection create".equals(command) && user != null) {
+                    collectionId = newestCollectionId(pool, user.getUserId());
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        return true;
+    }
+
+    // Replaces $collection in a command's arguments, or returns false if it's
+    // there but there's no collection to replace it with
+    private static boolean substituteCollection(String[] args, String collectionId) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(COLLECTION_PLACEHOLDER)) {
+                if (collectionId == null) {
+                    return false;
+                }
+
+                args[i] = collectionId;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the id of a user's most recently created collection.
+     *
+     * @param pool   The pool to borrow a connection from
+     * @param userId The user's id
+     * @return The id, or null if the user has no collections or it couldn't
+     *         be looked up
+     */
+    private static String newestCollectionId(ConnectionPool pool, int userId) {
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "select max(collection_id) from collection where user_id = ?");
+            ps.setInt(1, userId);
+
+            ResultSet result = ps.executeQuery();
+            result.next();
+
+            int collectionId = result.getInt(1);
+            return result.wasNull() ? null : String.valueOf(collectionId);
+        } catch (SQLException e) {
+            System.err.println("Couldn't find the collection user " + userId + " created: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes each command's results as CSV, one row per command.
+     *
+     * @param out Where to write them
+     */
+    void writeResults(PrintWriter out) {
+        out.println("command,count,p50_ms,p99_ms,p999_ms,max_ms,roundtrips_per_command");
+
+        for (Map.Entry<String, CommandStats> entry : this.stats.entrySet()) {
+            LatencyHistogram latencies = entry.getValue().latencies;
+
+            out.printf("%s,%d,%.3f,%.3f,%.3f,%.3f,%.2f%n", entry.getKey(), latencies.getCount(),
+                    millis(latencies.getPercentileNanos(50)), millis(latencies.getPercentileNanos(99)),
+                    millis(latencies.getPercentileNanos(99.9)), millis(latencies.getMaxNanos()),
+                    (double) entry.getValue().roundtrips / latencies.getCount());
+        }
+    }
+
+    /**
+     * Prints each command's results as a table.
+     */
+    void printResults() {
+        System.out.printf("%-24s %8s %9s %9s %9s %9s %11s%n", "command", "count", "p50 ms", "p99 ms", "p99.9 ms",
+                "max ms", "roundtrips");
+
+        for (Map.Entry<String, CommandStats> entry : this.stats.entrySet()) {
+            LatencyHistogram latencies = entry.getValue().latencies;
+
+            System.out.printf("%-24s %8d %9.3f %9.3f %9.3f %9.3f %11.2f%n", entry.getKey(), latencies.getCount(),
+                    millis(latencies.getPercentileNanos(50)), millis(latencies.getPercentileNanos(99)),
+                    millis(latencies.getPercentileNanos(99.9)), millis(latencies.getMaxNanos()),
+                    (double) entry.getValue().roundtrips / latencies.getCount());
+        }
+
+        if (this.skipped > 0) {
+            System.out.println(this.skipped + " commands skipped for want of a collection to use as $collection");
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Generates a script of common commands against the sample dataset. It
+     * logs in first, then mostly reads, with a user switching now and then.
+     * Each login is followed by creating a collection, which that user's
+     * collection adds go to, each book at most once.
+     *
+     * @param commands How many commands to generate
+     * @param scale    The scale the sample dataset was loaded at
+     * @param seed     The seed to draw commands with
+     * @return The script
+     * @throws FileNotFoundException If a name list is missing from ./data
+     */
+    static String syntheticScript(int commands, int scale, long seed) throws FileNotFoundException {
+        List<String> firstNames = SampleDataLoader.readLines("./data/first_names.txt");
+        List<String> lastNames = SampleDataLoader.readLines("./data/last_names.txt");
+        List<String> nouns = SampleDataLoader.readLines("./data/book_nouns.txt");
+
+        // Only the first round of names have no number on the end
+        int users = Math.min(SampleDataLoader.USERS_PER_SCALE * scale, firstNames.size() * lastNames.size());
+        int books = SampleDataLoader.BOOKS_PER_SCALE * scale;
+
+        Random rng = new Random(seed);
+        StringBuilder script = new StringBuilder();
+
+        // Books already in the current user's new collection
+        Set<Integer> collected = new HashSet<>();
+
+        for (int i = 0; i < commands; i++) {
+            int roll = i == 0 ? 0 : rng.nextInt(100);
+
+            if (roll < 5) {
+                String name = SampleDataLoader.sampleUsername(firstNames, lastNames, rng.nextInt(users) + 1);
+
+                script.append("login ").append(name).append(" pass_").append(name).append('\n');
+                script.append("collection create ").append(REPLAY_COLLECTION).append('\n');
+                collected.clear();
+            } else if (roll < 20) {
+                // Keywords, then blank answers for the rest of the prompts
+                script.append("book search\nkeywords\n").append(nouns.get(rng.nextInt(nouns.size())))
+                        .append("\n\n\n\n\n");
+            } else if (roll < 35) {
+                String name = SampleDataLoader.sampleUsername(firstNames, lastNames, rng.nextInt(users) + 1);
+
+                script.append("user profile ").append(name).append(' ')
+                        .append(PROFILE_SORTS[rng.nextInt(PROFILE_SORTS.length)]).append('\n');
+            } else if (roll < 50) {
+                script.append("book rate ").append(rng.nextInt(books) + 1).append(' ').append(rng.nextInt(5) + 1)
+                        .append('\n');
+            } else if (roll < 65) {
+                int startPage = rng.nextInt(200) + 1;
+                int day = rng.nextInt(28) + 1;
+                int hour = rng.nextInt(22);
+
+                script.append(String.format("book read %d %d %d 2025-06-%02dT%02d:00:00 2025-06-%02dT%02d:30:00%n",
+                        rng.nextInt(books) + 1, startPage, startPage + rng.nextInt(30), day, hour, day, hour + 1));
+            } else if (roll < 75) {
+                int bookId = rng.nextInt(books) + 1;
+
+                if (collected.add(bookId)) {
+                    script.append("collection add ").append(COLLECTION_PLACEHOLDER).append(' ').append(bookId)
+                            .append('\n');
+                } else {
+                    script.append("collection list\n");
+                }
+            } else if (roll < 85) {
+                script.append("recommend\n");
+            } else {
+                script.append("popular books\n");
+            }
+        }
+
+        return script.toString();
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        String url = null;
+        String user = System.getProperty("user.name");
+        String password = "";
+        Path scriptPath = null;
+        int commands = DEFAULT_COMMANDS;
+        int warmup = DEFAULT_WARMUP;
+        Path out = Path.of("replay-results.csv");
+        boolean load = false;
+        int scale = 1;
+        long seed = 42;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url":
+                    url = args[++i];
+                    break;
+                case "--user":
+                    user = args[++i];
+                    break;
+                case "--password":
+                    password = args[++i];
+                    break;
+                case "--script":
+                    scriptPath = Path.of(args[++i]);
+                    break;
+                case "--commands":
+                    commands = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = Path.of(args[++i]);
+                    break;
+                case "--load":
+                    load = true;
+                    break;
+                case "--scale":
+                    scale = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        if (url == null) {
+            System.err.println("Usage: WorkloadReplay --url URL [--user USER] [--password PASSWORD]"
+                    + " [--script FILE | --commands N] [--warmup N] [--out FILE] [--load] [--scale N] [--seed N]");
+            return;
+        }
+
+        ConnectionPool pool = new ConnectionPool(url, user, password, 4);
+        WorkloadReplay replay = new WorkloadReplay();
+
+        try {
+            String script = scriptPath == null ? syntheticScript(commands, scale, seed) : Files.readString(scriptPath);
+
+            if (load) {
+                // The loader needs the schema, so it has to be migrated first
+                Schema.apply(pool);
+                SampleDataLoader.setConnectionPool(pool);
+                SampleDataLoader.setScale(scale);
+                SampleDataLoader.setSeed(seed);
+                SampleDataLoader.loadAll();
+            }
+
+            if (!replay.replay(script, pool, warmup)) {
+                return;
+            }
+        } finally {
+            User.closeAccessLog();
+            pool.close();
+        }
+
+        replay.printResults();
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out))) {
+            replay.writeResults(writer);
+        }
+
+        System.out.println("Results written to " + out);
+    }
+}
@@ -0,0 +1,135 @@
+package com.booksly.app;
+
+import java.util.Random;
+
+/**
+ * Draws ids from 1 to n with Zipf-distributed popularity: the k-th most
+ * popular id comes up with probability proportional to 1 / k^exponent. Uses
+ * Hörmann and Derflinger's rejection-inversion method, so it needs no tables
+ * and draws in constant time however large n gets.
+ *
+ * Popularity ranks are scattered over the ids by a fixed permutation, so the
+ * popular ids aren't all at the start of the table.
+ */
+class ZipfSampler {
+    // Stepping by n over the golden ratio, any run of consecutive ranks lands
+    // spread evenly over the ids
+    private static final double SCATTER_FRACTION = (Math.sqrt(5) - 1) / 2;
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+    private final long stride;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param n        The number of ids
+     * @param exponent How skewed the popularity is, where 0 is uniform and
+     *                 around 1 is typical of real catalogs and social graphs
+     */
+    ZipfSampler(int n, double exponent) {
+        if (n < 1 || exponent <= 0) {
+            throw new IllegalArgumentException("Zipf sampler needs at least one id and a positive exponent");
+        }
+
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        this.stride = scatterStride(n);
+    }
+
+    /**
+     * Draws a popularity rank, where 1 is the most popular.
+     *
+     * @param rng The source of randomness
+     * @return A rank from 1 to n
+     */
+    int nextRank(Random rng) {
+        while (true) {
+            double u = this.hIntegralN + rng.nextDouble() * (this.hIntegralX1 - this.hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+
+            if (k < 1) {
+                k = 1;
+            } else if (k > this.n) {
+                k = this.n;
+            }
+
+            if (k - x <= this.s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Draws an id, with popular ranks scattered across the id range.
+     *
+     * @param rng The source of randomness
+     * @return An id from 1 to n
+     */
+    int nextId(Random rng) {
+        return toId(nextRank(rng));
+    }
+
+    // A bijection from ranks to ids, since the stride is coprime to n. Rank n
+    // is the one that gets id 1.
+    int toId(int rank) {
+        return (int) (rank * this.stride % this.n) + 1;
+    }
+
+    // The nearest stride at or above n over the golden ratio that's coprime to n
+    private static long scatterStride(int n) {
+        long stride = Math.max(1, Math.round(n * SCATTER_FRACTION));
+
+        while (gcd(stride, n) != 1) {
+            stride++;
+        }
+
+        return stride;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+
+        return a;
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - this.exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-this.exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - this.exponent);
+
+        if (t < -1) {
+            t = -1;
+        }
+
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, accurate near 0
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    // (e^x - 1) / x, accurate near 0
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,92 @@
+-- The tables the app was written against. Every statement is a no-op on a
+-- database that already has them, so existing databases adopt the migrations
+-- without changes.
+
+create table if not exists users (
+    user_id serial primary key,
+    username varchar(64) not null unique,
+    password_hash varchar(64) not null,
+    first_name varchar(64) not null,
+    last_name varchar(64) not null,
+    email varchar(255) not null unique,
+    creation_date timestamp not null,
+    last_access_date timestamp not null,
+    password_salt varchar(16)
+);
+
+create table if not exists user_access (
+    access_id serial primary key,
+    user_id integer not null references users (user_id) on delete cascade,
+    access_time timestamp not null
+);
+
+create table if not exists follows (
+    follower_id integer not null references users (user_id) on delete cascade,
+    followee_id integer not null references users (user_id) on delete cascade,
+    primary key (follower_id, followee_id)
+);
+
+create table if not exists book (
+    book_id serial primary key,
+    title varchar(255) not null,
+    audience varchar(16) not null,
+    release_date date not null,
+    length integer not null
+);
+
+create table if not exists contributor (
+    contributor_id serial primary key,
+    name varchar(255) not null
+);
+
+create table if not exists book_author (
+    book_id integer not null references book (book_id) on delete cascade,
+    author_id integer not null references contributor (contributor_id) on delete cascade,
+    primary key (book_id, author_id)
+);
+
+create table if not exists book_publisher (
+    book_id integer not null references book (book_id) on delete cascade,
+    publisher_id integer not null references contributor (contributor_id) on delete cascade,
+    primary key (book_id, publisher_id)
+);
+
+create table if not exists genre (
+    genre_id serial primary key,
+    name varchar(64) not null unique
+);
+
+create table if not exists book_genre (
+    book_id integer not null references book (book_id) on delete cascade,
+    genre_id integer not null references genre (genre_id) on delete cascade,
+    primary key (book_id, genre_id)
+);
+
+create table if not exists rating (
+    user_id integer not null references users (user_id) on delete cascade,
+    book_id integer not null references book (book_id) on delete cascade,
+    rating integer not null check (rating between 1 and 5),
+    primary key (user_id, book_id)
+);
+
+create table if not exists session (
+    session_id serial primary key,
+    user_id integer not null references users (user_id) on delete cascade,
+    book_id integer not null references book (book_id) on delete cascade,
+    start_page integer not null,
+    end_page integer not null,
+    start_time timestamp not null,
+    end_time timestamp not null
+);
+
+create table if not exists collection (
+    collection_id serial primary key,
+    user_id integer not null references users (user_id) on delete cascade,
+    name varchar(255) not null
+);
+
+create table if not exists collection_book (
+    collection_id integer not null references collection (collection_id) on delete cascade,
+    book_id integer not null references book (book_id) on delete cascade,
+    primary key (collection_id, book_id)
+);
@@ -0,0 +1,134 @@
+-- Primary publisher and genre of each book, kept as plain columns so book
+-- search can sort on them with an index instead of running a subquery per
+-- result row. A book's primary publisher or genre is the alphabetically first
+-- one, or '' if it has none.
+
+do $$
+begin
+    if not exists (select 1 from information_schema.columns
+                   where table_name = 'book' and column_name = 'primary_publisher') then
+        alter table book add column primary_publisher text not null default '';
+        alter table book add column primary_genre text not null default '';
+
+        update book b set
+            primary_publisher = coalesce((select min(c.name)
+                                          from book_publisher bp inner join contributor c
+                                          on c.contributor_id = bp.publisher_id
+                                          where bp.book_id = b.book_id), ''),
+            primary_genre = coalesce((select min(g.name)
+                                      from book_genre bg inner join genre g
+                                      on g.genre_id = bg.genre_id
+                                      where bg.book_id = b.book_id), '');
+    end if;
+end $$;
+
+create index if not exists book_primary_publisher_idx on book (primary_publisher, book_id);
+create index if not exists book_primary_genre_idx on book (primary_genre, book_id);
+
+create or replace function refresh_primary_publisher(book_ids integer[]) returns void as $$
+    update book b set primary_publisher = coalesce((select min(c.name)
+                                                    from book_publisher bp inner join contributor c
+                                                    on c.contributor_id = bp.publisher_id
+                                                    where bp.book_id = b.book_id), '')
+    where b.book_id = any(book_ids);
+$$ language sql;
+
+create or replace function refresh_primary_genre(book_ids integer[]) returns void as $$
+    update book b set primary_genre = coalesce((select min(g.name)
+                                                from book_genre bg inner join genre g
+                                                on g.genre_id = bg.genre_id
+                                                where bg.book_id = b.book_id), '')
+    where b.book_id = any(book_ids);
+$$ language sql;
+
+-- Statement level triggers see every changed row at once through transition
+-- tables, so a bulk load refreshes each book once instead of once per row.
+-- Transition tables can't be shared between events, hence one trigger each.
+
+create or replace function book_publisher_changed() returns trigger as $$
+begin
+    if tg_op = 'INSERT' then
+        perform refresh_primary_publisher(array(select distinct book_id from new_rows));
+    elsif tg_op = 'DELETE' then
+        perform refresh_primary_publisher(array(select distinct book_id from old_rows));
+    else
+        perform refresh_primary_publisher(array(select book_id from new_rows
+                                                union select book_id from old_rows));
+    end if;
+
+    return null;
+end;
+$$ language plpgsql;
+
+create or replace function book_genre_changed() returns trigger as $$
+begin
+    if tg_op = 'INSERT' then
+        perform refresh_primary_genre(array(select distinct book_id from new_rows));
+    elsif tg_op = 'DELETE' then
+        perform refresh_primary_genre(array(select distinct book_id from old_rows));
+    else
+        perform refresh_primary_genre(array(select book_id from new_rows
+                                            union select book_id from old_rows));
+    end if;
+
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists book_publisher_inserted on book_publisher;
+create trigger book_publisher_inserted after insert on book_publisher
+    referencing new table as new_rows
+    for each statement execute function book_publisher_changed();
+
+drop trigger if exists book_publisher_deleted on book_publisher;
+create trigger book_publisher_deleted after delete on book_publisher
+    referencing old table as old_rows
+    for each statement execute function book_publisher_changed();
+
+drop trigger if exists book_publisher_updated on book_publisher;
+create trigger book_publisher_updated after update on book_publisher
+    referencing new table as new_rows old table as old_rows
+    for each statement execute function book_publisher_changed();
+
+drop trigger if exists book_genre_inserted on book_genre;
+create trigger book_genre_inserted after insert on book_genre
+    referencing new table as new_rows
+    for each statement execute function book_genre_changed();
+
+drop trigger if exists book_genre_deleted on book_genre;
+create trigger book_genre_deleted after delete on book_genre
+    referencing old table as old_rows
+    for each statement execute function book_genre_changed();
+
+drop trigger if exists book_genre_updated on book_genre;
+create trigger book_genre_updated after update on book_genre
+    referencing new table as new_rows old table as old_rows
+    for each statement execute function book_genre_changed();
+
+-- Renaming a publisher or genre changes the sort key of every book using it
+
+create or replace function contributor_renamed() returns trigger as $$
+begin
+    perform refresh_primary_publisher(array(select bp.book_id from book_publisher bp
+                                            where bp.publisher_id = new.contributor_id));
+    return null;
+end;
+$$ language plpgsql;
+
+create or replace function genre_renamed() returns trigger as $$
+begin
+    perform refresh_primary_genre(array(select bg.book_id from book_genre bg
+                                        where bg.genre_id = new.genre_id));
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists contributor_renamed on contributor;
+create trigger contributor_renamed after update of name on contributor
+    for each row when (old.name is distinct from new.name)
+    execute function contributor_renamed();
+
+drop trigger if exists genre_renamed on genre;
+create trigger genre_renamed after update of name on genre
+    for each row when (old.name is distinct from new.name)
+    execute function genre_renamed();
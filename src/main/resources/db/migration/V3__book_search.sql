@@ -0,0 +1,125 @@
+-- Search document of each book: its title, author names and publisher names.
+-- The tsvector answers prefix and multi-word searches, and the trigram index
+-- on the document text catches misspellings. Both are GIN indexes, so a
+-- keyword search stays an index lookup however large the catalog gets.
+
+create extension if not exists pg_trgm;
+
+create or replace function refresh_book_search(book_ids integer[]) returns void as $$
+    insert into book_search (book_id, document, vector)
+    select b.book_id,
+           concat_ws(' ', b.title, a.names, p.names),
+           setweight(to_tsvector('simple', b.title), 'A') ||
+           setweight(to_tsvector('simple', coalesce(a.names, '')), 'B') ||
+           setweight(to_tsvector('simple', coalesce(p.names, '')), 'C')
+    from book b
+    cross join lateral (select string_agg(c.name, ' ') as names
+                        from book_author ba inner join contributor c
+                        on c.contributor_id = ba.author_id
+                        where ba.book_id = b.book_id) a
+    cross join lateral (select string_agg(c.name, ' ') as names
+                        from book_publisher bp inner join contributor c
+                        on c.contributor_id = bp.publisher_id
+                        where bp.book_id = b.book_id) p
+    where b.book_id = any(book_ids)
+    on conflict (book_id) do update
+        set document = excluded.document, vector = excluded.vector;
+$$ language sql;
+
+do $$
+begin
+    if to_regclass('book_search') is null then
+        create table book_search (
+            book_id integer primary key references book (book_id) on delete cascade,
+            document text not null,
+            vector tsvector not null
+        );
+
+        perform refresh_book_search(array(select book_id from book));
+    end if;
+end $$;
+
+create index if not exists book_search_vector_idx on book_search using gin (vector);
+create index if not exists book_search_document_trgm_idx on book_search using gin (document gin_trgm_ops);
+
+-- Works for any table with a book_id column
+create or replace function book_search_changed() returns trigger as $$
+begin
+    if tg_op = 'INSERT' then
+        perform refresh_book_search(array(select distinct book_id from new_rows));
+    elsif tg_op = 'DELETE' then
+        perform refresh_book_search(array(select distinct book_id from old_rows));
+    else
+        perform refresh_book_search(array(select book_id from new_rows
+                                          union select book_id from old_rows));
+    end if;
+
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists book_search_inserted on book;
+create trigger book_search_inserted after insert on book
+    referencing new table as new_rows
+    for each statement execute function book_search_changed();
+
+drop trigger if exists book_author_search_inserted on book_author;
+create trigger book_author_search_inserted after insert on book_author
+    referencing new table as new_rows
+    for each statement execute function book_search_changed();
+
+drop trigger if exists book_author_search_deleted on book_author;
+create trigger book_author_search_deleted after delete on book_author
+    referencing old table as old_rows
+    for each statement execute function book_search_changed();
+
+drop trigger if exists book_author_search_updated on book_author;
+create trigger book_author_search_updated after update on book_author
+    referencing new table as new_rows old table as old_rows
+    for each statement execute function book_search_changed();
+
+drop trigger if exists book_publisher_search_inserted on book_publisher;
+create trigger book_publisher_search_inserted after insert on book_publisher
+    referencing new table as new_rows
+    for each statement execute function book_search_changed();
+
+drop trigger if exists book_publisher_search_deleted on book_publisher;
+create trigger book_publisher_search_deleted after delete on book_publisher
+    referencing old table as old_rows
+    for each statement execute function book_search_changed();
+
+drop trigger if exists book_publisher_search_updated on book_publisher;
+create trigger book_publisher_search_updated after update on book_publisher
+    referencing new table as new_rows old table as old_rows
+    for each statement execute function book_search_changed();
+
+-- Transition tables can't be combined with a column list, and titles and
+-- names rarely change, so these two fire per row
+
+create or replace function book_title_changed() returns trigger as $$
+begin
+    perform refresh_book_search(array[new.book_id]);
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists book_title_changed on book;
+create trigger book_title_changed after update of title on book
+    for each row when (old.title is distinct from new.title)
+    execute function book_title_changed();
+
+create or replace function contributor_search_renamed() returns trigger as $$
+begin
+    perform refresh_book_search(array(select ba.book_id from book_author ba
+                                      where ba.author_id = new.contributor_id
+                                      union
+                                      select bp.book_id from book_publisher bp
+                                      where bp.publisher_id = new.contributor_id));
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists contributor_search_renamed on contributor;
+create trigger contributor_search_renamed after update of name on contributor
+    for each row when (old.name is distinct from new.name)
+    execute function contributor_search_renamed();
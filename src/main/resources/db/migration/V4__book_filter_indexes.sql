@@ -0,0 +1,18 @@
+-- Indexes behind the book search filters in BookFilter and the sort keys in
+-- BookSearch. The (value, book_id) pairs match the keyset the search pages
+-- with, so a filtered or sorted page is a range scan that stops after a page.
+
+create index if not exists book_title_idx on book (title, book_id);
+create index if not exists book_release_date_idx on book (release_date, book_id);
+create index if not exists book_audience_idx on book (audience, book_id);
+
+-- Names are looked up first, then followed to their books
+create index if not exists contributor_name_idx on contributor (name);
+create index if not exists genre_name_idx on genre (name);
+
+create index if not exists book_author_author_idx on book_author (author_id, book_id);
+create index if not exists book_publisher_publisher_idx on book_publisher (publisher_id, book_id);
+create index if not exists book_genre_genre_idx on book_genre (genre_id, book_id);
+
+-- Covers the average rating of a book without reading the table
+create index if not exists rating_book_idx on rating (book_id, rating);
@@ -0,0 +1,20 @@
+-- Indexes for the lookups in User, Book and App that the primary keys don't
+-- already cover. Schema checks these, and the ones from earlier migrations,
+-- before the app starts serving.
+
+-- getFollowerCount: where followee_id = ?
+-- (getFollowingCount and isFollowing use the follows primary key)
+create index if not exists follows_followee_idx on follows (followee_id, follower_id);
+
+-- displayTopRead, displayTopRatingsAndRead and recommendBooks: where s.user_id = ?
+create index if not exists session_user_idx on session (user_id, book_id);
+
+-- getPopularBooks: where s.start_time > current_date - 90
+create index if not exists session_start_time_idx on session (start_time);
+
+-- getPopularBooks and recommendBooks join sessions to books by book_id
+create index if not exists session_book_idx on session (book_id);
+
+-- listCollections and getCollectionCount: where user_id = ?
+create index if not exists collection_user_idx on collection (user_id);
+
@@ -0,0 +1,14 @@
+-- Progress of the sample data loader. Each load task, a whole table or one
+-- chunk of users' rows, records how many of its rows are committed in the
+-- same transaction as the rows themselves, so an interrupted load can be
+-- rerun and picks up after the last committed chunk. The seed and scale are
+-- kept so a rerun can't resume with different data.
+
+create table if not exists load_checkpoint (
+    task varchar(64) primary key,
+    seed bigint not null,
+    scale integer not null,
+    rows_loaded bigint not null,
+    completed boolean not null default false,
+    updated_at timestamp not null default now()
+);
@@ -0,0 +1,50 @@
+-- Indexes Schema requires that V1 only gets as a side effect of its primary
+-- key and unique constraints. On a database whose tables predate the
+-- migrations V1 does nothing, so they're created here unless an index already
+-- leads with the same columns, which on a fresh database the constraint's
+-- index does.
+
+create or replace function pg_temp.create_index_unless_covered(index_name text, table_name text,
+        index_columns text[], is_unique boolean) returns void as $$
+begin
+    if not exists (
+            select 1
+            from pg_index i
+            where i.indrelid = to_regclass(table_name)
+              and (i.indkey::int2[])[0:cardinality(index_columns) - 1] = (
+                  select array_agg(a.attnum order by c.ord)
+                  from unnest(index_columns) with ordinality c(name, ord)
+                  inner join pg_attribute a on a.attrelid = to_regclass(table_name) and a.attname = c.name)) then
+        execute format('create %s index if not exists %I on %I (%s)',
+                case when is_unique then 'unique' else '' end, index_name, table_name,
+                array_to_string(array(select quote_ident(c) from unnest(index_columns) c), ', '));
+    end if;
+end;
+$$ language plpgsql;
+
+-- Logins, signups and profiles look users up by username: where username = ?
+select pg_temp.create_index_unless_covered('users_username_idx', 'users', array['username'], true);
+
+-- Signups check emails aren't taken: where email = ?
+select pg_temp.create_index_unless_covered('users_email_idx', 'users', array['email'], true);
+
+-- isFollowing and unfollowUser: where follower_id = ? and followee_id = ?,
+-- and getFollowingCount: where follower_id = ?
+select pg_temp.create_index_unless_covered('follows_follower_idx', 'follows',
+        array['follower_id', 'followee_id'], false);
+
+-- hasRatedBook and updateBookRating: where user_id = ? and book_id = ?
+select pg_temp.create_index_unless_covered('rating_user_idx', 'rating', array['user_id', 'book_id'], false);
+
+-- removeBookFromCollection: where collection_id = ? and book_id = ?, and
+-- listCollections joins each collection to its books by collection_id
+select pg_temp.create_index_unless_covered('collection_book_collection_idx', 'collection_book',
+        array['collection_id'], false);
+
+-- Book search and recommendBooks join genres, authors and publishers to
+-- books by book_id
+select pg_temp.create_index_unless_covered('book_genre_book_idx', 'book_genre', array['book_id'], false);
+select pg_temp.create_index_unless_covered('book_author_book_idx', 'book_author', array['book_id'], false);
+select pg_temp.create_index_unless_covered('book_publisher_book_idx', 'book_publisher', array['book_id'], false);
+
+drop function pg_temp.create_index_unless_covered(text, text, text[], boolean);
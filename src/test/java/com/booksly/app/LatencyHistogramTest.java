@@ -0,0 +1,56 @@
+package com.booksly.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        Random rng = new Random(3);
+        long[] values = new long[100_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // Log-normal, roughly 50µs to tens of ms like real query times
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(13 + 1.5 * rng.nextGaussian());
+            histogram.record(values[i]);
+        }
+
+        Arrays.sort(values);
+
+        for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(expected, histogram.getPercentileNanos(percentile), expected * 0.03, "p" + percentile);
+        }
+
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(values[values.length - 1], histogram.getPercentileNanos(100));
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(5, histogram.getPercentileNanos(50));
+        assertEquals(10, histogram.getPercentileNanos(99));
+        assertEquals(5.5, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentileNanos(99));
+        assertEquals(0, histogram.getMeanNanos());
+    }
+}
@@ -0,0 +1,47 @@
+package com.booksly.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class PairSetTest {
+
+    @Test
+    public void rejectsRepeatedPairs() {
+        PairSet pairs = new PairSet(4);
+
+        assertTrue(pairs.add(1, 2));
+        assertTrue(pairs.add(2, 1));
+        assertFalse(pairs.add(1, 2));
+        assertTrue(pairs.add(0, 0));
+        assertFalse(pairs.add(0, 0));
+        assertTrue(pairs.add(-1, -1));
+        assertEquals(4, pairs.size());
+    }
+
+    @Test
+    public void matchesHashSetWhileGrowing() {
+        PairSet pairs = new PairSet(16);
+        Set<Long> expected = new HashSet<>();
+        Random rng = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            int first = rng.nextInt(1, 500);
+            int second = rng.nextInt(1, 500);
+
+            assertEquals(expected.add(PairSet.pack(first, second)), pairs.add(first, second));
+        }
+
+        assertEquals(expected.size(), pairs.size());
+
+        for (long key : expected) {
+            assertTrue(pairs.contains((int) (key >>> 32), (int) key));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.booksly.app;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PasswordHasherTest {
+
+    // The original implementation, which every stored hash was made with
+    private static String referenceHash(String password, String salt) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        StringBuilder salted = new StringBuilder();
+        for (int i = 0; i < password.length(); i++) {
+            salted.append(salt.charAt((i + 5) % salt.length()));
+            salted.append(password.charAt(i));
+        }
+        byte[] hash = digest.digest(salted.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            String digits = Integer.toHexString(0xff & b);
+            if (digits.length() == 1) {
+                hex.append('0');
+            }
+            hex.append(digits);
+        }
+        return hex.toString();
+    }
+
+    private static String randomString(Random rng, int length, char[] alphabet) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet[rng.nextInt(alphabet.length)];
+        }
+        return new String(chars);
+    }
+
+    @Test
+    public void matchesOriginalHashes() throws NoSuchAlgorithmException {
+        // ASCII, two and three byte UTF-8, and both halves of a surrogate pair
+        char[] alphabet = "abcXYZ019_ é€中😀".toCharArray();
+        Random rng = new Random(3);
+
+        assertEquals(referenceHash("", "abc"), PasswordHasher.hash("", "abc"));
+
+        for (int i = 0; i < 5000; i++) {
+            String password = randomString(rng, rng.nextInt(0, 40), alphabet);
+            String salt = rng.nextBoolean()
+                    ? Integer.toHexString(rng.nextInt(Integer.MAX_VALUE))
+                    : randomString(rng, rng.nextInt(1, 10), alphabet);
+
+            assertEquals(referenceHash(password, salt), PasswordHasher.hash(password, salt), password + " / " + salt);
+        }
+    }
+
+    @Test
+    public void hashAllMatchesHash() {
+        List<String> passwords = new ArrayList<>();
+        List<String> salts = new ArrayList<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            passwords.add("pass_" + i);
+            salts.add(Integer.toHexString(i * 7919));
+        }
+
+        String[] expected = new String[passwords.size()];
+
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = PasswordHasher.hash(passwords.get(i), salts.get(i));
+        }
+
+        assertArrayEquals(expected, PasswordHasher.hashAll(passwords, salts));
+    }
+}
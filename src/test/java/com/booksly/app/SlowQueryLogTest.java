@@ -0,0 +1,27 @@
+package com.booksly.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class SlowQueryLogTest {
+
+    @Test
+    public void writesOneEscapedJsonObject() {
+        SlowQueryLog.SlowQuery query = new SlowQueryLog.SlowQuery(Instant.parse("2025-01-02T03:04:05Z"),
+                "User.displayTopRead", "select \"title\"\r\nfrom book where book_id = ?",
+                Arrays.asList(7, "it's \\ \"quoted\"", null), 123_456_789, 10);
+
+        assertEquals("{\"time\":\"2025-01-02T03:04:05Z\",\"caller\":\"User.displayTopRead\",\"millis\":123.457,"
+                + "\"rows\":10,\"sql\":\"select \\\"title\\\"\\r\\nfrom book where book_id = ?\","
+                + "\"parameters\":[7,\"it's \\\\ \\\"quoted\\\"\",null]}", query.toJson());
+    }
+
+    @Test
+    public void tagsTheCallingAppMethod() {
+        assertEquals("SlowQueryLogTest.tagsTheCallingAppMethod", Callers.current());
+    }
+}
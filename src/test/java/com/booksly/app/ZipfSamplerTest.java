@@ -0,0 +1,88 @@
+package com.booksly.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ZipfSamplerTest {
+
+    @Test
+    public void matchesZipfFrequencies() {
+        int n = 100;
+        double exponent = 1.0;
+        int draws = 1_000_000;
+
+        ZipfSampler sampler = new ZipfSampler(n, exponent);
+        Random rng = new Random(7);
+        int[] counts = new int[n + 1];
+
+        for (int i = 0; i < draws; i++) {
+            counts[sampler.nextRank(rng)]++;
+        }
+
+        double total = 0;
+
+        for (int k = 1; k <= n; k++) {
+            total += 1 / Math.pow(k, exponent);
+        }
+
+        for (int k = 1; k <= 10; k++) {
+            double expected = draws / Math.pow(k, exponent) / total;
+            assertEquals(expected, counts[k], expected * 0.02, "rank " + k);
+        }
+    }
+
+    @Test
+    public void scattersRanksOverEveryId() {
+        int n = 10_000;
+        ZipfSampler sampler = new ZipfSampler(n, 1.1);
+        boolean[] seen = new boolean[n + 1];
+
+        for (int rank = 1; rank <= n; rank++) {
+            int id = sampler.toId(rank);
+
+            assertTrue(id >= 1 && id <= n);
+            assertFalse(seen[id], "id " + id + " given to two ranks");
+            seen[id] = true;
+        }
+    }
+
+    @Test
+    public void spreadsPopularRanksAcrossTheIds() {
+        // 10 000 is scale 1 of the sample dataset
+        for (int n : new int[] { 10_000, 20_000, 50_000, 1_000_000 }) {
+            ZipfSampler sampler = new ZipfSampler(n, 1.1);
+            int[] tenths = new int[10];
+
+            for (int rank = 1; rank <= 100; rank++) {
+                int id = sampler.toId(rank);
+
+                if (rank <= 10) {
+                    assertTrue(id > n / 100, "rank " + rank + " got id " + id + " of " + n);
+                }
+
+                tenths[(int) ((id - 1) * 10L / n)]++;
+            }
+
+            for (int tenth = 0; tenth < 10; tenth++) {
+                assertTrue(tenths[tenth] >= 5 && tenths[tenth] <= 15,
+                        tenths[tenth] + " of the top 100 ranks in tenth " + tenth + " of " + n + " ids");
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedSameIds() {
+        ZipfSampler sampler = new ZipfSampler(1_000_000, 1.0);
+        Random first = new Random(99);
+        Random second = new Random(99);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(sampler.nextId(first), sampler.nextId(second));
+        }
+    }
+}